@@ -0,0 +1,134 @@
+
+package bench.java.com.smartroom;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal benchmark harness (the project builds with plain javac, no JMH on the classpath).
+ * Each benchmark warms up, then runs for a fixed time and reports throughput, ns/op,
+ * allocated bytes/op (ThreadMXBean) and GC count/time (GC MXBeans), like JMH's -prof gc.
+ *
+ * Common arguments handled by {@link #finish(String[])}:
+ *   --out=results.csv        save this run
+ *   --baseline=results.csv   compare with a previous run and exit 1 on regression
+ *   --tolerance=0.20         allowed slowdown / extra allocation (default 20%)
+ *   --seconds=N --warmup=N   measurement / warm-up time per benchmark
+ */
+public final class Bench {
+
+    public record Result(String name, double opsPerSec, double nsPerOp, double bytesPerOp, long gcCount, long gcMillis) {}
+
+    private final List<Result> results = new ArrayList<>();
+    private final double seconds;
+    private final double warmupSeconds;
+    private long sink;
+
+    public Bench(String[] args) {
+        this.seconds = Double.parseDouble(option(args, "seconds", "3"));
+        this.warmupSeconds = Double.parseDouble(option(args, "warmup", "1"));
+        System.out.printf("%-48s %14s %12s %10s %6s %8s%n", "benchmark", "ops/s", "ns/op", "B/op", "gc", "gc ms");
+    }
+
+    /** Runs {@code op} repeatedly; its return value is consumed so the JIT cannot drop the work. */
+    public Result run(String name, LongSupplier op) {
+        long warmEnd = System.nanoTime() + (long) (warmupSeconds * 1e9);
+        while (System.nanoTime() < warmEnd) sink += op.getAsLong();
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        long gcCount0 = gcCount();
+        long gcTime0 = gcMillis();
+        long alloc0 = mx.getThreadAllocatedBytes(tid);
+        long ops = 0;
+        long batch = 1;
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            for (long i = 0; i < batch; i++) sink += op.getAsLong();
+            ops += batch;
+            // grow batches so timer calls stay negligible for fast operations
+            if (System.nanoTime() - now < 1_000_000) batch = Math.min(batch * 2, 1 << 20);
+        }
+        long elapsed = System.nanoTime() - start;
+        long alloc = mx.getThreadAllocatedBytes(tid) - alloc0;
+        Result r = new Result(name, ops / (elapsed / 1e9), elapsed / (double) ops, alloc / (double) ops,
+                gcCount() - gcCount0, gcMillis() - gcTime0);
+        System.out.printf("%-48s %,14.0f %,12.1f %,10.1f %6d %8d%n",
+                name, r.opsPerSec, r.nsPerOp, r.bytesPerOp, r.gcCount, r.gcMillis);
+        results.add(r);
+        return r;
+    }
+
+    public List<Result> results() {
+        return List.copyOf(results);
+    }
+
+    /** Writes/compares results according to the command line; returns the process exit code. */
+    public int finish(String[] args) throws IOException {
+        if (sink == 42) System.out.print(""); // keep sink alive
+        String out = option(args, "out", null);
+        if (out != null) {
+            StringBuilder sb = new StringBuilder("benchmark;ns_per_op;bytes_per_op\n");
+            for (Result r : results) {
+                sb.append(r.name).append(';').append(String.format(Locale.ROOT, "%.3f", r.nsPerOp))
+                  .append(';').append(String.format(Locale.ROOT, "%.3f", r.bytesPerOp)).append('\n');
+            }
+            Files.writeString(Path.of(out), sb.toString());
+            System.out.println("Resultados salvos em " + out);
+        }
+        String baseline = option(args, "baseline", null);
+        if (baseline == null) return 0;
+
+        double tolerance = Double.parseDouble(option(args, "tolerance", "0.20"));
+        Map<String, double[]> base = new HashMap<>();
+        for (String line : Files.readAllLines(Path.of(baseline))) {
+            String[] p = line.split(";");
+            if (p.length < 3 || p[0].equals("benchmark")) continue;
+            base.put(p[0], new double[]{Double.parseDouble(p[1]), Double.parseDouble(p[2])});
+        }
+        int regressions = 0;
+        for (Result r : results) {
+            double[] b = base.get(r.name);
+            if (b == null) continue;
+            boolean slower = r.nsPerOp > b[0] * (1 + tolerance);
+            // allow a few bytes of noise so 0 B/op baselines do not flap
+            boolean moreGarbage = r.bytesPerOp > b[1] * (1 + tolerance) + 8;
+            if (slower || moreGarbage) {
+                regressions++;
+                System.out.printf("REGRESSÃO %s: %.1f ns/op (antes %.1f), %.1f B/op (antes %.1f)%n",
+                        r.name, r.nsPerOp, b[0], r.bytesPerOp, b[1]);
+            }
+        }
+        System.out.println(regressions == 0 ? "Sem regressões em relação a " + baseline : regressions + " regressão(ões)");
+        return regressions == 0 ? 0 : 1;
+    }
+
+    public static String option(String[] args, String name, String fallback) {
+        String prefix = "--" + name + "=";
+        for (String a : args) if (a.startsWith(prefix)) return a.substring(prefix.length());
+        return fallback;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+}
@@ -0,0 +1,144 @@
+
+package bench.java.com.smartroom;
+
+import main.java.com.smartroom.SmartRoomController;
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.actuators.SimpleActuator;
+import main.java.com.smartroom.repository.BinarySeriesRepository;
+import main.java.com.smartroom.repository.FileRepository;
+import main.java.com.smartroom.repository.MappedRingRepository;
+import main.java.com.smartroom.repository.Repository;
+import main.java.com.smartroom.rules.CompiledRuleEngine;
+import main.java.com.smartroom.rules.DefaultRuleEngine;
+import main.java.com.smartroom.rules.RuleEngine;
+import main.java.com.smartroom.sensors.Sensor;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.sensors.SensorType;
+import main.java.com.smartroom.time.SystemClock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hot paths of the terminal version: control cycle, rule engine and persistence.
+ * Writes go to a temporary directory that is removed at the end.
+ */
+public class ControlCycleBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("smartroom-bench");
+        Bench bench = new Bench(args);
+        int exit;
+        try {
+            runCycles(bench, dir);
+            runIdleRoom(bench, dir);
+            runRules(bench);
+            runRepositories(bench, dir);
+            exit = bench.finish(args);
+        } finally {
+            deleteRecursively(dir);
+        }
+        System.exit(exit);
+    }
+
+    private static void runCycles(Bench bench, Path dir) {
+        RuleEngine compiled = CompiledRuleEngine.compile("Luz = pres >= 0.5 and lux < 300\nVentilador = temp > 28");
+        Map<String, Repository> repos = new LinkedHashMap<>();
+        repos.put("FileRepository", new FileRepository(dir.resolve("file")));
+        repos.put("BinarySeriesRepository", new BinarySeriesRepository(dir.resolve("series")));
+        repos.put("MappedRingRepository", new MappedRingRepository(dir.resolve("ring/room.ring"), 4096));
+        for (var e : repos.entrySet()) {
+            for (RuleEngine rules : List.of(new DefaultRuleEngine(), compiled)) {
+                SmartRoomController c = SmartRoomController.createRoom(rules, e.getValue(), new SystemClock());
+                c.setConsoleOutput(false);
+                bench.run("runOnce " + rules.getClass().getSimpleName() + "/" + e.getKey(), () -> {
+                    c.runOnce();
+                    return 1;
+                });
+            }
+        }
+    }
+
+    // Occupied, lit room whose readings only jitter within the sensors' deadbands
+    private static void runIdleRoom(Bench bench, Path dir) {
+        for (boolean changeDriven : new boolean[] {false, true}) {
+            Repository repo = new BinarySeriesRepository(dir.resolve("idle-" + changeDriven));
+            SmartRoomController c = new SmartRoomController(new DefaultRuleEngine(), repo, new SystemClock());
+            c.addSensor(new QuietSensor(SensorType.TEMPERATURE, 24.0, 0.2, 0.5));
+            c.addSensor(new QuietSensor(SensorType.PRESENCE, 1.0, 0.0, 0.0));
+            c.addSensor(new QuietSensor(SensorType.LIGHT, 450.0, 10.0, 25.0));
+            c.addActuator("Luz", new SimpleActuator("ACT001", "Luz"));
+            c.addActuator("Ventilador", new SimpleActuator("ACT002", "Ventilador"));
+            c.setConsoleOutput(false);
+            c.setChangeDriven(changeDriven);
+            bench.run("runOnce idle room" + (changeDriven ? " (change-driven)" : ""), () -> {
+                c.runOnce();
+                return 1;
+            });
+        }
+    }
+
+    private record QuietSensor(SensorType type, double base, double noise, double deadband) implements Sensor {
+        @Override public String getId() { return type.name(); }
+        @Override public String getName() { return type.name(); }
+        @Override public SensorType getType() { return type; }
+        @Override public double readValue() { return base + (ThreadLocalRandom.current().nextDouble() - 0.5) * noise; }
+    }
+
+    private static void runRules(Bench bench) {
+        DefaultRuleEngine rules = new DefaultRuleEngine();
+        Map<String, Double> values = new HashMap<>(Map.of("temp", 29.0, "pres", 1.0, "lux", 250.0));
+        Map<String, Boolean> current = new HashMap<>(Map.of("Luz", false, "Ventilador", false));
+        bench.run("DefaultRuleEngine.apply(Map)", () -> rules.apply(values, current).size());
+
+        SensorFrame frame = SensorFrame.fromMap(values);
+        ActuatorState state = new ActuatorState(List.of("Luz", "Ventilador"));
+        bench.run("DefaultRuleEngine.apply(SensorFrame)", () -> {
+            rules.apply(frame, state);
+            return state.bits();
+        });
+    }
+
+    private static void runRepositories(Bench bench, Path dir) {
+        Map<String, Double> values = Map.of("temp", 24.5, "pres", 1.0, "lux", 420.0);
+        Map<String, Boolean> actuators = Map.of("Luz", true, "Ventilador", false);
+        LocalDateTime ts = LocalDateTime.now();
+
+        FileRepository file = new FileRepository(dir.resolve("file-append"));
+        bench.run("FileRepository.appendSensorSnapshot", () -> {
+            file.appendSensorSnapshot(ts, values, actuators);
+            return 1;
+        });
+
+        SensorFrame frame = SensorFrame.fromMap(values);
+        ActuatorState state = new ActuatorState(List.of("Luz", "Ventilador"));
+        state.apply(actuators);
+        long millis = System.currentTimeMillis();
+
+        BinarySeriesRepository series = new BinarySeriesRepository(dir.resolve("series-append"));
+        bench.run("BinarySeriesRepository.append(SensorFrame)", () -> {
+            series.appendSensorSnapshot(millis, frame, state);
+            return 1;
+        });
+
+        MappedRingRepository ring = new MappedRingRepository(dir.resolve("ring-append/room.ring"), 4096);
+        bench.run("MappedRingRepository.append(SensorFrame)", () -> {
+            ring.appendSensorSnapshot(millis, frame, state);
+            return 1;
+        });
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
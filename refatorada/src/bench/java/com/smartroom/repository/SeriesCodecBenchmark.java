@@ -0,0 +1,142 @@
+package bench.java.com.smartroom.repository;
+
+import bench.java.com.smartroom.Bench;
+import main.java.com.smartroom.repository.BinarySeriesRepository;
+import main.java.com.smartroom.repository.SeriesBlockDecoder;
+import main.java.com.smartroom.repository.SeriesBlockEncoder;
+import main.java.com.smartroom.sensors.SensorType;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Compression ratio and encode/decode throughput of {@link SeriesBlockEncoder} against the fixed
+ * 40-byte records of {@link BinarySeriesRepository}, on two simulated histories:
+ * a realistic room (1 s cycles with a few ms of jitter, temperature in tenths of a degree drifting
+ * over the day, presence changing every few minutes, integral lux, actuators following the
+ * default rules) and the full-precision uniform noise of the Fake sensors (worst case).
+ * Usage: SeriesCodecBenchmark [--records=100000] [--block=1024] plus the common {@link Bench} options.
+ * MB/s refers to the uncompressed record size.
+ */
+public class SeriesCodecBenchmark {
+
+    private static final int[] COLUMNS = {
+            SensorType.TEMPERATURE.ordinal(), SensorType.PRESENCE.ordinal(), SensorType.LIGHT.ordinal()};
+    private static final int RAW_RECORD_BYTES = Long.BYTES + COLUMNS.length * Double.BYTES + Long.BYTES;
+
+    private record Series(long[] millis, double[][] values, long[] masks) {
+        int size() { return millis.length; }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int records = Integer.parseInt(Bench.option(args, "records", "100000"));
+        int block = Integer.parseInt(Bench.option(args, "block", "1024"));
+        Series realistic = realistic(records, new SplittableRandom(42));
+        Series noise = noise(records, new SplittableRandom(42));
+
+        Bench bench = new Bench(args);
+        String[] names = {"sala simulada", "ruído (Fake sensors)"};
+        Series[] data = {realistic, noise};
+        double[][] summary = new double[data.length][];
+        for (int d = 0; d < data.length; d++) {
+            summary[d] = run(bench, names[d], data[d], block);
+        }
+        System.out.printf("%n%-24s %10s %12s %12s %12s%n", "dados", "B/registro", "compressão", "enc MB/s", "dec MB/s");
+        for (int d = 0; d < data.length; d++) {
+            System.out.printf("%-24s %10.2f %11.1fx %12.1f %12.1f%n", names[d], summary[d][0],
+                    RAW_RECORD_BYTES / summary[d][0], summary[d][1], summary[d][2]);
+        }
+        System.exit(bench.finish(args));
+    }
+
+    // Returns {encoded bytes per record, encode MB/s, decode MB/s}
+    private static double[] run(Bench bench, String name, Series series, int block) {
+        SeriesBlockEncoder encoder = new SeriesBlockEncoder(COLUMNS, 2);
+        SeriesBlockDecoder decoder = new SeriesBlockDecoder(COLUMNS, 2);
+        int blocks = series.size() / block;
+        ByteBuffer[] encoded = new ByteBuffer[blocks];
+        long total = 0;
+        for (int b = 0; b < blocks; b++) {
+            encode(encoder, series, b * block, block);
+            encoded[b] = ByteBuffer.allocate(encoder.encodedBytes());
+            encoder.writeTo(encoded[b]);
+            total += encoded[b].flip().remaining();
+        }
+        verify(decoder, encoded, series, block);
+
+        int[] next = {0};
+        Bench.Result enc = bench.run("encode " + name + " (" + block + " reg.)", () -> {
+            int b = next[0]++ % blocks;
+            encode(encoder, series, b * block, block);
+            return encoder.encodedBytes();
+        });
+        Bench.Result dec = bench.run("decode " + name + " (" + block + " reg.)", () -> {
+            ByteBuffer buf = encoded[next[0]++ % blocks];
+            decoder.load(buf.rewind());
+            long sum = 0;
+            while (decoder.next()) sum += decoder.actuatorMask();
+            return sum;
+        });
+        double rawBlockMb = (double) block * RAW_RECORD_BYTES / 1e6;
+        return new double[]{(double) total / ((long) blocks * block), enc.opsPerSec() * rawBlockMb, dec.opsPerSec() * rawBlockMb};
+    }
+
+    private static void encode(SeriesBlockEncoder encoder, Series series, int from, int count) {
+        encoder.reset();
+        for (int i = from; i < from + count; i++) encoder.append(series.millis()[i], series.values()[i], series.masks()[i]);
+    }
+
+    // The codec must be lossless: every decoded record matches the input bit for bit
+    private static void verify(SeriesBlockDecoder decoder, ByteBuffer[] encoded, Series series, int block) {
+        for (int b = 0; b < encoded.length; b++) {
+            decoder.load(encoded[b].rewind());
+            for (int i = b * block; decoder.next(); i++) {
+                boolean same = decoder.timestampMillis() == series.millis()[i] && decoder.actuatorMask() == series.masks()[i];
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    same &= Double.doubleToRawLongBits(decoder.value(c)) == Double.doubleToRawLongBits(series.values()[i][c]);
+                }
+                if (!same) throw new IllegalStateException("Decoded record " + i + " differs from the input");
+            }
+        }
+    }
+
+    private static Series realistic(int n, SplittableRandom rnd) {
+        long[] millis = new long[n];
+        double[][] values = new double[n][];
+        long[] masks = new long[n];
+        long t = 1_700_000_000_000L;
+        double temp = 24.0;
+        boolean present = false;
+        for (int i = 0; i < n; i++) {
+            t += 1000 + rnd.nextInt(-3, 4);
+            double hour = (t / 3_600_000.0) % 24;
+            double daylight = Math.max(0, Math.sin((hour - 6) / 12 * Math.PI));
+            // temperature follows the sun slowly; the sensor resolution is 0.1 °C
+            temp += (22 + 6 * daylight - temp) * 0.001 + rnd.nextDouble(-0.02, 0.02);
+            if (rnd.nextInt(300) == 0) present = !present;
+            double lux = Math.rint(800 * daylight + (present ? 150 : 0) + rnd.nextInt(-2, 3));
+            double t10 = Math.rint(temp * 10) / 10;
+            values[i] = new double[]{t10, present ? 1.0 : 0.0, Math.max(0, lux)};
+            masks[i] = (present && lux < 300 ? 1 : 0) | (t10 > 28 ? 2 : 0);
+            millis[i] = t;
+        }
+        return new Series(millis, values, masks);
+    }
+
+    private static Series noise(int n, SplittableRandom rnd) {
+        long[] millis = new long[n];
+        double[][] values = new double[n][];
+        long[] masks = new long[n];
+        long t = 1_700_000_000_000L;
+        for (int i = 0; i < n; i++) {
+            t += 2000 + rnd.nextInt(-3, 4);
+            double temp = 22.0 + rnd.nextDouble() * 9.0;
+            boolean present = rnd.nextBoolean();
+            double lux = rnd.nextDouble() * 1000;
+            values[i] = new double[]{temp, present ? 1.0 : 0.0, lux};
+            masks[i] = (present && lux < 300 ? 1 : 0) | (temp > 28 ? 2 : 0);
+            millis[i] = t;
+        }
+        return new Series(millis, values, masks);
+    }
+}
@@ -0,0 +1,70 @@
+
+package bench.java.com.smartroom.rules;
+
+import bench.java.com.smartroom.Bench;
+import main.java.com.smartroom.rules.CompiledRuleEngine;
+import main.java.com.smartroom.rules.InterpretedRuleEngine;
+import main.java.com.smartroom.rules.RuleParser;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Throughput of the interpreted vs compiled rule engines on a generated rule set.
+ * Usage: RuleEngineBenchmark [--rules=1000] plus the common {@link Bench} options.
+ */
+public class RuleEngineBenchmark {
+
+    private static final String[] KEYS = {"temp", "pres", "lux", "umid", "co2", "ruido", "temp2", "lux2"};
+    private static final String[] OPS = {"<", "<=", ">", ">=", "!="};
+
+    public static void main(String[] args) throws Exception {
+        int ruleCount = Integer.parseInt(Bench.option(args, "rules", "1000"));
+
+        String text = generateRules(ruleCount, new SplittableRandom(42));
+        List<RuleParser.Rule> rules = RuleParser.parse(text);
+        InterpretedRuleEngine interpreted = new InterpretedRuleEngine(rules);
+        CompiledRuleEngine compiled = CompiledRuleEngine.compile(rules);
+
+        Map<String, Double> values = new HashMap<>();
+        for (String k : KEYS) values.put(k, 50.0);
+        Map<String, Boolean> current = new HashMap<>();
+        double[] inputs = new double[compiled.inputKeys().size()];
+        for (int i = 0; i < inputs.length; i++) inputs[i] = values.get(compiled.inputKeys().get(i));
+        boolean[] out = new boolean[compiled.actuatorNames().size()];
+
+        if (!interpreted.apply(values, current).equals(compiled.apply(values, current))) {
+            throw new IllegalStateException("Interpreted and compiled engines disagree");
+        }
+
+        System.out.printf("%d regras, %d atuadores, %d entradas%n", rules.size(), out.length, inputs.length);
+        Bench bench = new Bench(args);
+        Bench.Result base = bench.run("interpretado apply(Map)", () -> interpreted.apply(values, current).size());
+        bench.run("compilado apply(Map)", () -> compiled.apply(values, current).size());
+        Bench.Result fast = bench.run("compilado evaluate(double[])", () -> {
+            compiled.evaluate(inputs, out);
+            return out[0] ? 1 : 0;
+        });
+        System.out.printf("Speedup evaluate vs interpretado: %.1fx%n", fast.opsPerSec() / base.opsPerSec());
+        System.exit(bench.finish(args));
+    }
+
+    static String generateRules(int count, SplittableRandom rnd) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("Atuador").append(i % 64).append(" = ");
+            int terms = 1 + rnd.nextInt(3);
+            for (int t = 0; t < terms; t++) {
+                if (t > 0) sb.append(rnd.nextBoolean() ? " and " : " or ");
+                if (rnd.nextInt(5) == 0) sb.append("not ");
+                sb.append(KEYS[rnd.nextInt(KEYS.length)]).append(' ')
+                  .append(OPS[rnd.nextInt(OPS.length)]).append(' ')
+                  .append(rnd.nextInt(100));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
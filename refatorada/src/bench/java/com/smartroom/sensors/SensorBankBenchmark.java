@@ -0,0 +1,60 @@
+package bench.java.com.smartroom.sensors;
+
+import bench.java.com.smartroom.Bench;
+import main.java.com.smartroom.sensors.FakeLightSensor;
+import main.java.com.smartroom.sensors.FakePresenceSensor;
+import main.java.com.smartroom.sensors.FakeSensorBank;
+import main.java.com.smartroom.sensors.FakeTemperatureSensor;
+import main.java.com.smartroom.sensors.Sensor;
+import main.java.com.smartroom.sensors.SensorBank;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reading N simulated sensors per cycle: one Fake sensor object per sensor, read with one
+ * readValue() each (the three classes mixed in one array, as a controller registers them),
+ * against {@link FakeSensorBank} struct-of-arrays banks read with one readInto per type.
+ * Usage: SensorBankBenchmark [--sensors=1000000] plus the common {@link Bench} options.
+ * One op reads every sensor once.
+ */
+public class SensorBankBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int sensors = Integer.parseInt(Bench.option(args, "sensors", "1000000"));
+        int perType = sensors / 3;
+
+        List<Sensor> objects = new ArrayList<>(perType * 3);
+        for (int i = 0; i < perType; i++) {
+            objects.add(new FakeTemperatureSensor("TEMP" + i, "Temperatura " + i, i));
+            objects.add(new FakePresenceSensor("PRES" + i, "Presença " + i, i));
+            objects.add(new FakeLightSensor("LUX" + i, "Luminosidade " + i, i));
+        }
+        Sensor[] mixed = objects.toArray(new Sensor[0]);
+        SensorBank[] banks = {
+                FakeSensorBank.temperature("TEMP", perType, 1),
+                FakeSensorBank.presence("PRES", perType, 2),
+                FakeSensorBank.light("LUX", perType, 3)};
+        double[] dst = new double[mixed.length];
+
+        System.out.printf("%,d sensores (%,d por tipo)%n", perType * 3, perType);
+        Bench bench = new Bench(args);
+        Bench.Result base = bench.run("objetos Sensor (readValue)", () -> {
+            for (int i = 0; i < mixed.length; i++) dst[i] = mixed[i].readValue();
+            return (long) dst[0] + (long) dst[mixed.length - 1];
+        });
+        Bench.Result soa = bench.run("FakeSensorBank (readInto)", () -> readAll(banks, dst));
+        System.out.printf("Speedup FakeSensorBank: %.1fx (%.2f ns/sensor)%n",
+                soa.opsPerSec() / base.opsPerSec(), soa.nsPerOp() / (perType * 3));
+        System.exit(bench.finish(args));
+    }
+
+    private static long readAll(SensorBank[] banks, double[] dst) {
+        long sum = 0;
+        for (SensorBank b : banks) {
+            b.readInto(dst);
+            sum += (long) dst[0] + (long) dst[b.size() - 1];
+        }
+        return sum;
+    }
+}
@@ -1,19 +1,31 @@
 
 package main.java.com.smartroom;
 
+import main.java.com.smartroom.metrics.Metrics;
+import main.java.com.smartroom.repository.AsyncRepository;
 import main.java.com.smartroom.repository.Repository;
+import main.java.com.smartroom.rules.RuleEngine;
+import main.java.com.smartroom.runtime.RoomRuntime;
+import main.java.com.smartroom.runtime.SimulationRunner;
+import main.java.com.smartroom.time.Clock;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Scanner;
 
 /**
  * Terminal entrypoint (no web/front-end).
  * Offers a simple loop: run N cycles or watch mode.
+ * The continuous modes keep data/metrics.prom up to date for the Prometheus node_exporter
+ * textfile collector (disable with -Dsmartroom.metrics=false).
  */
 public class Main {
     public static void main(String[] args) throws Exception {
         Path dataDir = Path.of("data");
         SmartRoomController controller = SmartRoomController.createDefault(dataDir);
+        // Registrations are done: resolution is a table lookup from here on
+        ServiceLocator.freeze();
+        Repository repository = ServiceLocator.resolve(Repository.class);
 
         Scanner sc = new Scanner(System.in);
         System.out.println("=== Smart Room (versão refatorada - terminal) ===");
@@ -21,31 +33,77 @@ public class Main {
         System.out.println("2) Executar 10 ciclos");
         System.out.println("3) Modo contínuo (Ctrl+C para sair)");
         System.out.println("4) Gerar relatório e sair");
+        System.out.println("5) Multi-salas (RoomRuntime, Ctrl+C para sair)");
+        System.out.println("6) Simulação acelerada (capacidade)");
         System.out.print("Escolha: ");
         String choice = sc.nextLine().trim();
 
         switch (choice) {            case "1" -> {
                 controller.runOnce();
                 System.out.println(controller.generateReport());
-                ServiceLocator.resolve(Repository.class).writeReport(controller.generateReport());
+                repository.writeReport(controller.generateReport());
             }
             case "2" -> {
                 for (int i=0;i<10;i++) {
                     controller.runOnce();
                     Thread.sleep(500);
                 }
-                ServiceLocator.resolve(Repository.class).writeReport(controller.generateReport());
+                repository.writeReport(controller.generateReport());
             }
             case "3" -> {
                 while (true) {
                     controller.runOnce();
+                    if (Metrics.ENABLED) Metrics.writeTextFile(dataDir.resolve("metrics.prom"));
                     Thread.sleep(2000);
                 }
             }
             case "4" -> {
-                ServiceLocator.resolve(Repository.class).writeReport(controller.generateReport());
+                repository.writeReport(controller.generateReport());
                 System.out.println("Relatório salvo em data/reports.txt");
             }
+            case "5" -> {
+                System.out.print("Número de salas: ");
+                int count = Integer.parseInt(sc.nextLine().trim());
+                RuleEngine rules = ServiceLocator.resolve(RuleEngine.class);
+                Clock clock = ServiceLocator.resolve(Clock.class);
+                // rooms share one writer thread that group-commits their snapshots, each room
+                // into its own series under data/rooms/SALA<i> so the history stays attributable;
+                // only the -Dsmartroom.repository.maxOpenRooms (256) most recently written rooms keep
+                // a segment open, the writer releases the rest, so the descriptor count stays bounded
+                AsyncRepository repo = new AsyncRepository(repository);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        repo.close();
+                    } catch (Exception e) {
+                        System.err.println("Erro ao fechar repositório: " + e.getMessage());
+                    }
+                }));
+                try (RoomRuntime runtime = RoomRuntime.withVirtualThreads()) {
+                    for (int i = 1; i <= count; i++) {
+                        Repository roomRepo = repo.room(SmartRoomController.openRepository(dataDir.resolve("rooms/SALA" + i)));
+                        SmartRoomController room = SmartRoomController.createRoom(rules, roomRepo, clock);
+                        room.setConsoleOutput(false);
+                        runtime.addRoom("SALA" + i, room, Duration.ofSeconds(2), Duration.ofMillis(250));
+                    }
+                    while (true) {
+                        Thread.sleep(5000);
+                        System.out.println(runtime.stats());
+                        System.out.println(repo.stats());
+                        StringBuilder aggregates = new StringBuilder();
+                        runtime.aggregateStats().render(aggregates);
+                        System.out.print(aggregates);
+                        if (Metrics.ENABLED) Metrics.writeTextFile(dataDir.resolve("metrics.prom"));
+                    }
+                }
+            }
+            case "6" -> {
+                System.out.print("Número de salas: ");
+                String rooms = sc.nextLine().trim();
+                System.out.print("Dias simulados: ");
+                String days = sc.nextLine().trim();
+                // clock virtual de 1 s por ciclo, dados em diretório temporário
+                SimulationRunner.main(new String[]{"--rooms=" + rooms, "--days=" + days});
+            }
             default -> System.out.println("Opção inválida.");
         }
     }
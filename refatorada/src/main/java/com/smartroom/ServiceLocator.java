@@ -1,42 +1,208 @@
-
 package main.java.com.smartroom;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 /**
  * Simple Service Locator for dependency resolution.
  * Avoids new-ing dependencies across the codebase.
  * You can swap implementations by changing registrations here.
+ *
+ * Safe to use from any thread: registrations live in concurrent maps and a factory runs at most
+ * once per registration (computeIfAbsent semantics), even when rooms resolve it concurrently.
+ * Besides the global registry there are named {@link Scope}s (one per room or tenant) whose own
+ * registrations override the global ones. After startup, {@link #freeze()} turns a scope into an
+ * array indexed by {@link Key}: resolving then takes no lock, no hashing and no allocation,
+ * and further registrations fail.
  */
 public class ServiceLocator {
-    private static final Map<Class<?>, Object> services = new HashMap<>();
-    private static final Map<Class<?>, Supplier<?>> factories = new HashMap<>();
+
+    private static final Scope ROOT = new Scope("global", null);
+    private static final Map<String, Scope> scopes = new ConcurrentHashMap<>();
 
     public static <T> void register(Class<T> type, T instance) {
-        services.put(type, instance);
+        ROOT.register(type, instance);
     }
 
     public static <T> void registerFactory(Class<T> type, Supplier<T> supplier) {
-        factories.put(type, supplier);
+        ROOT.registerFactory(type, supplier);
     }
 
-    @SuppressWarnings("unchecked")
     public static <T> T resolve(Class<T> type) {
-        Object svc = services.get(type);
-        if (svc != null) return (T) svc;
-        Supplier<?> sup = factories.get(type);
-        if (sup != null) {
-            T inst = (T) sup.get();
-            services.put(type, inst);
-            return inst;
-        }
-        throw new IllegalStateException("No service registered for: " + type.getName());
+        return ROOT.resolve(type);
+    }
+
+    public static <T> T resolve(Key<T> key) {
+        return ROOT.resolve(key);
+    }
+
+    /** Freezes the global registry (see {@link Scope#freeze()}). */
+    public static void freeze() {
+        ROOT.freeze();
     }
 
+    /** The scope with this name, created on first use as a child of the global registry. */
+    public static Scope scope(String name) {
+        return scopes.computeIfAbsent(name, n -> new Scope(n, ROOT));
+    }
+
+    public static void removeScope(String name) {
+        scopes.remove(name);
+    }
+
+    /** Drops every registration and scope and unfreezes the global registry. */
     public static void clear() {
-        services.clear();
-        factories.clear();
+        scopes.clear();
+        ROOT.clear();
+    }
+
+    /**
+     * Precomputed handle for a service type: keep one in a static final field and resolve
+     * with it to skip the class lookup. Every type gets one key for the life of the JVM.
+     */
+    public static final class Key<T> {
+        private static final AtomicInteger NEXT = new AtomicInteger();
+        private static final ClassValue<Key<?>> KEYS = new ClassValue<>() {
+            @Override
+            protected Key<?> computeValue(Class<?> type) {
+                return new Key<>(type, NEXT.getAndIncrement());
+            }
+        };
+
+        private final Class<T> type;
+        private final int index;
+
+        private Key(Class<T> type, int index) {
+            this.type = type;
+            this.index = index;
+        }
+
+        @SuppressWarnings("unchecked")
+        public static <T> Key<T> of(Class<T> type) {
+            return (Key<T>) KEYS.get(type);
+        }
+
+        public Class<T> type() { return type; }
+
+        @Override
+        public String toString() {
+            return "Key[" + type.getName() + "]";
+        }
+    }
+
+    /** A registry; resolution falls back to the parent for types it does not register itself. */
+    public static final class Scope {
+        private final String name;
+        private final Scope parent;
+        private final Map<Class<?>, Binding> bindings = new ConcurrentHashMap<>();
+        // Set by freeze(): instance of every visible type at its Key index
+        private volatile Object[] frozen;
+
+        private Scope(String name, Scope parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        public String name() { return name; }
+
+        public <T> void register(Class<T> type, T instance) {
+            checkNotFrozen();
+            bindings.put(type, new Binding(type, null, Objects.requireNonNull(instance, type.getName())));
+        }
+
+        public <T> void registerFactory(Class<T> type, Supplier<T> supplier) {
+            checkNotFrozen();
+            bindings.put(type, new Binding(type, supplier, null));
+        }
+
+        public <T> T resolve(Class<T> type) {
+            return resolve(Key.of(type));
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T resolve(Key<T> key) {
+            Object[] table = frozen;
+            if (table != null) {
+                Object svc = key.index < table.length ? table[key.index] : null;
+                if (svc == null) throw missing(key.type);
+                return (T) svc;
+            }
+            Binding b = lookup(key.type);
+            if (b == null) throw missing(key.type);
+            return (T) b.get();
+        }
+
+        /**
+         * Creates every service visible from this scope (running pending factories) and
+         * switches resolution to the precomputed table. Registering afterwards throws.
+         * Scopes created from a frozen registry still accept their own registrations.
+         */
+        public void freeze() {
+            List<Binding> visible = new ArrayList<>();
+            for (Scope s = this; s != null; s = s.parent) {
+                for (Binding b : s.bindings.values()) {
+                    if (lookup(b.type) == b) visible.add(b);
+                }
+            }
+            int size = 0;
+            for (Binding b : visible) size = Math.max(size, Key.of(b.type).index + 1);
+            Object[] table = new Object[size];
+            for (Binding b : visible) table[Key.of(b.type).index] = b.get();
+            frozen = table;
+        }
+
+        public boolean isFrozen() {
+            return frozen != null;
+        }
+
+        private Binding lookup(Class<?> type) {
+            for (Scope s = this; s != null; s = s.parent) {
+                Binding b = s.bindings.get(type);
+                if (b != null) return b;
+            }
+            return null;
+        }
+
+        private void clear() {
+            bindings.clear();
+            frozen = null;
+        }
+
+        private void checkNotFrozen() {
+            if (frozen != null) throw new IllegalStateException("Service scope '" + name + "' is frozen");
+        }
+
+        private IllegalStateException missing(Class<?> type) {
+            return new IllegalStateException("No service registered for: " + type.getName());
+        }
+    }
+
+    // One registration; the factory runs at most once, and only the first resolve takes the lock
+    private static final class Binding {
+        private final Class<?> type;
+        private final Supplier<?> factory;
+        private volatile Object instance;
+
+        Binding(Class<?> type, Supplier<?> factory, Object instance) {
+            this.type = type;
+            this.factory = factory;
+            this.instance = instance;
+        }
+
+        Object get() {
+            Object svc = instance;
+            if (svc != null) return svc;
+            synchronized (this) {
+                if (instance == null) {
+                    instance = Objects.requireNonNull(factory.get(), () -> "Factory returned null for: " + type.getName());
+                }
+                return instance;
+            }
+        }
     }
 }
@@ -2,19 +2,35 @@
 package main.java.com.smartroom;
 
 import main.java.com.smartroom.actuators.Actuator;
+import main.java.com.smartroom.actuators.ActuatorBus;
+import main.java.com.smartroom.actuators.ActuatorCommandQueue;
+import main.java.com.smartroom.actuators.ActuatorState;
 import main.java.com.smartroom.actuators.SimpleActuator;
-import main.java.com.smartroom.repository.FileRepository;
+import main.java.com.smartroom.metrics.LatencyHistogram;
+import main.java.com.smartroom.metrics.Metrics;
+import main.java.com.smartroom.repository.BinarySeriesRepository;
+import main.java.com.smartroom.repository.CompressedSeriesRepository;
 import main.java.com.smartroom.repository.Repository;
+import main.java.com.smartroom.rules.CompiledRuleEngine;
 import main.java.com.smartroom.rules.DefaultRuleEngine;
 import main.java.com.smartroom.rules.RuleEngine;
 import main.java.com.smartroom.sensors.FakeLightSensor;
 import main.java.com.smartroom.sensors.FakePresenceSensor;
 import main.java.com.smartroom.sensors.FakeTemperatureSensor;
 import main.java.com.smartroom.sensors.Sensor;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.sensors.SensorReader;
+import main.java.com.smartroom.sensors.SensorType;
+import main.java.com.smartroom.stats.RoomStats;
 import main.java.com.smartroom.time.Clock;
 import main.java.com.smartroom.time.SystemClock;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.nio.file.Path;
@@ -26,68 +42,232 @@ import java.nio.file.Path;
  */
 public class SmartRoomController {
 
+    // Shared by every room: recording is lock-free, so rooms on different threads never contend on a lock
+    private static final String STAGE_METRIC = "smartroom_cycle_stage_seconds";
+    private static final String STAGE_HELP = "Duration of each stage of SmartRoomController.runOnce.";
+    private static final LatencyHistogram STAGE_READ = Metrics.histogram(STAGE_METRIC, STAGE_HELP, "stage", "read");
+    private static final LatencyHistogram STAGE_RULES = Metrics.histogram(STAGE_METRIC, STAGE_HELP, "stage", "rules");
+    private static final LatencyHistogram STAGE_ACTUATE = Metrics.histogram(STAGE_METRIC, STAGE_HELP, "stage", "actuate");
+    private static final LatencyHistogram STAGE_PERSIST = Metrics.histogram(STAGE_METRIC, STAGE_HELP, "stage", "persist");
+    private static final LatencyHistogram STAGE_STATS = Metrics.histogram(STAGE_METRIC, STAGE_HELP, "stage", "stats");
+    private static final LatencyHistogram STAGE_CONSOLE = Metrics.histogram(STAGE_METRIC, STAGE_HELP, "stage", "console");
+    private static final LatencyHistogram STAGE_TOTAL = Metrics.histogram(STAGE_METRIC, STAGE_HELP, "stage", "total");
+
+    // Change-driven mode: every KEYFRAME_CYCLES cycles rules run in full and a snapshot is written anyway
+    private static final int KEYFRAME_CYCLES = 60;
+
     private final List<Sensor> sensors = new ArrayList<>();
+    private final SensorReader reader = new SensorReader();
+    private Duration readDeadline;
     private final Map<String, Actuator> actuators = new HashMap<>();
+    // Actuators in registration order; slot i of the ActuatorState
+    private final List<String> actuatorNames = new ArrayList<>();
+    private Actuator[] actuatorSlots = new Actuator[0];
+    private ActuatorState state = new ActuatorState(List.of());
+    private ActuatorBus actuatorBus = ActuatorBus.DIRECT;
+    private Duration actuatorHold = Duration.ZERO;
+    private ActuatorCommandQueue commands = new ActuatorCommandQueue(new Actuator[0], actuatorBus, 0);
+    private final SensorFrame frame = new SensorFrame();
     private final RuleEngine rules;
     private final Repository repo;
     private final Clock clock;
     private final AtomicLong cycles = new AtomicLong(0);
+    private final AtomicLong persisted = new AtomicLong(0);
+    // Change-driven mode: per-type deadband and the last value passed on to rules/repository
+    private boolean changeDriven;
+    private final double[] deadbands = new double[SensorType.count()];
+    private final double[] reference = new double[SensorType.count()];
+    private long referencePresent;
+    private long referenceStale;
+    private long persistedActuators;
+    private int sinceKeyframe = KEYFRAME_CYCLES;
+    private final RoomStats stats = new RoomStats();
+    private volatile boolean consoleOutput = true;
 
     public SmartRoomController(RuleEngine rules, Repository repo, Clock clock) {
         this.rules = rules;
         this.repo = repo;
         this.clock = clock;
+        Arrays.fill(deadbands, Double.POSITIVE_INFINITY);
     }
 
     public void addSensor(Sensor s) {
+        addSensor(s, readDeadline);
+    }
+
+    /** Registers a sensor read concurrently and waited for at most {@code deadline} per cycle (null = inline). */
+    public void addSensor(Sensor s, Duration deadline) {
         sensors.add(s);
+        reader.add(s, deadline);
+        int type = s.getType().ordinal();
+        deadbands[type] = Math.min(deadbands[type], s.deadband());
+    }
+
+    /**
+     * Deadline for every sensor registered so far and by {@link #addSensor(Sensor)} from now on:
+     * reads then run in parallel and a late sensor contributes its last value flagged stale
+     * (see {@link SensorReader}). Null (the default) reads sequentially on the cycle thread.
+     */
+    public void setReadDeadline(Duration deadline) {
+        this.readDeadline = deadline;
+        reader.setDeadline(deadline);
     }
 
     public void addActuator(String name, Actuator a) {
         actuators.put(name, a);
+        if (!actuatorNames.contains(name)) actuatorNames.add(name);
+        actuatorSlots = actuatorNames.stream().map(actuators::get).toArray(Actuator[]::new);
+        state = new ActuatorState(actuatorNames);
+        commands = new ActuatorCommandQueue(actuatorSlots, actuatorBus, actuatorHold.toMillis());
     }
 
-    public void runOnce() {
-        LocalDateTime ts = clock.now();
-        Map<String, Double> values = new HashMap<>();
-        for (Sensor s : sensors) {
-            double v = s.readValue();
-            switch (s.getType()) {
-                case TEMPERATURE -> values.put("temp", v);
-                case PRESENCE -> values.put("pres", v);
-                case LIGHT -> values.put("lux", v);
-            }
-        }
+    /**
+     * Actuator commands go through an {@link ActuatorCommandQueue}: only changes are sent, in one
+     * {@code bus} call per cycle, and an actuator keeps each state for at least {@code hold}
+     * (changes reverted within it are dropped). Resets the command counters.
+     */
+    public void setActuatorDispatch(ActuatorBus bus, Duration hold) {
+        actuatorBus = bus;
+        actuatorHold = hold;
+        commands = new ActuatorCommandQueue(actuatorSlots, bus, hold.toMillis());
+    }
 
-        Map<String, Boolean> currentStates = new HashMap<>();
-        actuators.forEach((k, a) -> currentStates.put(k, a.isOn()));
+    /**
+     * Change-driven mode: a reading only counts as changed when it moves beyond its sensor's
+     * {@link Sensor#deadband()} (otherwise rules and repository keep seeing the previous value),
+     * only rules reading a changed type are re-evaluated ({@link RuleEngine#applyChanged}),
+     * only actuators whose state flips are touched, and the repository only receives cycles
+     * with a change ({@link Repository#appendSensorDelta}), plus a keyframe every
+     * {@value #KEYFRAME_CYCLES} cycles.
+     */
+    public void setChangeDriven(boolean changeDriven) {
+        this.changeDriven = changeDriven;
+        sinceKeyframe = KEYFRAME_CYCLES;
+    }
 
-        Map<String, Boolean> newStates = rules.apply(values, currentStates);
-        // apply
-        newStates.forEach((name, on) -> {
-            Actuator a = actuators.get(name);
-            if (a == null) return;
-            if (on) a.turnOn(); else a.turnOff();
-        });
+    /** Disable the per-cycle terminal output (e.g. when hosting many rooms in one RoomRuntime). */
+    public void setConsoleOutput(boolean consoleOutput) {
+        this.consoleOutput = consoleOutput;
+    }
 
-        // Persist
-        Map<String, Boolean> snapshot = new HashMap<>();
-        actuators.forEach((k, a) -> snapshot.put(k, a.isOn()));
-        repo.appendSensorSnapshot(ts, values, snapshot);
+    /**
+     * One control cycle. Sensor readings and actuator states travel in a reused SensorFrame /
+     * ActuatorState pair, so with console output disabled a cycle produces no garbage
+     * (given a Clock, rules and repository that implement the primitive overloads).
+     * Not reentrant: callers must not run two cycles of the same controller concurrently.
+     * Each stage is timed into {@link Metrics} unless metrics are disabled.
+     */
+    public void runOnce() {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        long t = start;
+        long millis = clock.epochMillis();
+        frame.clear();
+        reader.read(frame);
+        if (Metrics.ENABLED) t = Metrics.lap(STAGE_READ, t);
+
+        if (changeDriven) {
+            t = runChanges(millis, t);
+        } else {
+            readActuators();
+            long actual = state.bits();
+            rules.apply(frame, state);
+            if (Metrics.ENABLED) t = Metrics.lap(STAGE_RULES, t);
+            commands.submit(actual, state.bits(), millis);
+            if (Metrics.ENABLED) t = Metrics.lap(STAGE_ACTUATE, t);
+
+            // Persist what the actuators actually report
+            readActuators();
+            repo.appendSensorSnapshot(millis, frame, state);
+            persisted.incrementAndGet();
+            if (Metrics.ENABLED) t = Metrics.lap(STAGE_PERSIST, t);
+        }
+        stats.record(millis, frame, state);
+        if (Metrics.ENABLED) t = Metrics.lap(STAGE_STATS, t);
 
         // Terminal output
         long c = cycles.incrementAndGet();
+        if (consoleOutput) printCycle(c, millis);
+        if (Metrics.ENABLED) {
+            Metrics.lap(STAGE_CONSOLE, t);
+            Metrics.lap(STAGE_TOTAL, start);
+        }
+    }
+
+    // Rules, actuation and persistence of a change-driven cycle; returns the stage clock
+    private long runChanges(long millis, long t) {
+        boolean keyframe = ++sinceKeyframe >= KEYFRAME_CYCLES;
+        if (keyframe) sinceKeyframe = 0;
+        long changed = filterChanges();
+
+        readActuators();
+        long actual = state.bits();
+        // actuators whose rules are skipped keep wanting what they wanted (a change may be held)
+        state.setBits(commands.desired());
+        if (keyframe) rules.apply(frame, state);
+        else rules.applyChanged(frame, state, changed);
+        if (Metrics.ENABLED) t = Metrics.lap(STAGE_RULES, t);
+        commands.submit(actual, state.bits(), millis);
+        if (Metrics.ENABLED) t = Metrics.lap(STAGE_ACTUATE, t);
+
+        readActuators();
+        long changedActuators = state.bits() ^ persistedActuators;
+        if (keyframe || changed != 0 || changedActuators != 0) {
+            repo.appendSensorDelta(millis, frame, state, changed, changedActuators);
+            persistedActuators = state.bits();
+            persisted.incrementAndGet();
+        }
+        if (Metrics.ENABLED) t = Metrics.lap(STAGE_PERSIST, t);
+        return t;
+    }
+
+    /**
+     * Compares the frame with the reference values: types that moved beyond their deadband (or
+     * appeared, disappeared or changed staleness) become the new reference and are returned as
+     * a bitmask; the others are put back to the reference value so every consumer sees it.
+     */
+    private long filterChanges() {
+        long changed = 0;
+        long present = frame.presentMask();
+        for (int i = 0; i < reference.length; i++) {
+            long bit = 1L << i;
+            boolean has = (present & bit) != 0;
+            boolean stale = frame.isStale(i);
+            if (has != ((referencePresent & bit) != 0) || stale != ((referenceStale & bit) != 0)
+                    || (has && Math.abs(frame.get(i) - reference[i]) > deadbands[i])) {
+                changed |= bit;
+                reference[i] = frame.get(i);
+                referencePresent = has ? referencePresent | bit : referencePresent & ~bit;
+                referenceStale = stale ? referenceStale | bit : referenceStale & ~bit;
+            } else if (has) {
+                if (stale) frame.setStale(SensorType.byOrdinal(i), reference[i]);
+                else frame.set(SensorType.byOrdinal(i), reference[i]);
+            }
+        }
+        return changed;
+    }
+
+    private void printCycle(long c, long millis) {
+        LocalDateTime ts = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
         System.out.printf("Ciclo #%d @ %s%n", c, ts);
         System.out.printf("  Temperatura: %.1f°C | Presença: %s | Luminosidade: %d lux%n",
-                values.getOrDefault("temp", 0.0),
-                values.getOrDefault("pres", 0.0) >= 0.5 ? "SIM" : "NÃO",
-                (int)Math.round(values.getOrDefault("lux", 0.0)));
+                frame.get(SensorType.TEMPERATURE, 0.0),
+                frame.get(SensorType.PRESENCE, 0.0) >= 0.5 ? "SIM" : "NÃO",
+                (int)Math.round(frame.get(SensorType.LIGHT, 0.0)));
+        if (frame.staleMask() != 0) {
+            StringJoiner late = new StringJoiner(", ");
+            for (SensorType t : SensorType.values()) if (frame.isStale(t)) late.add(t.key());
+            System.out.printf("  Leituras fora do prazo (último valor): %s%n", late);
+        }
         System.out.printf("  Atuadores → Luz: %s | Ventilador: %s%n",
                 actuators.get("Luz").isOn() ? "LIGADA" : "DESLIGADA",
                 actuators.get("Ventilador").isOn() ? "LIGADO" : "DESLIGADO");
         System.out.println();
     }
 
+    private void readActuators() {
+        for (int i = 0; i < actuatorSlots.length; i++) state.set(i, actuatorSlots[i].isOn());
+    }
+
     public String generateReport() {
         StringBuilder sb = new StringBuilder();
         sb.append("=== RELATÓRIO DO SISTEMA ===\n");
@@ -99,28 +279,100 @@ public class SmartRoomController {
         sb.append("\n\nDISPOSITIVOS:\n");
         actuators.forEach((k, a) -> sb.append("- ").append(k).append(": ").append(a.isOn() ? "LIGADO" : "DESLIGADO").append("\n"));
         sb.append("\nESTATÍSTICAS:\n- Ciclos processados: ").append(cycles.get()).append("\n");
+        if (changeDriven) sb.append("- Ciclos persistidos (modo por mudança): ").append(persisted.get()).append("\n");
+        sb.append(String.format(Locale.ROOT, "- Comandos aos atuadores: %d enviados em %d lotes de %d possíveis (%d revertidos na espera; %.2f/s economizados)%n",
+                commands.dispatched(), commands.batches(), commands.requested(), commands.coalesced(), commands.savedPerSecond()));
+        if (reader.timeouts() + reader.failures() > 0) {
+            sb.append("- Leituras fora do prazo: ").append(reader.timeouts())
+                    .append(" | com erro: ").append(reader.failures()).append("\n");
+        }
+        stats.render(sb);
         return sb.toString();
     }
 
+    /** Snapshots handed to the repository so far (every cycle, or only changes in change-driven mode). */
+    public long persistedSnapshots() {
+        return persisted.get();
+    }
+
+    /** Running aggregates of this room, updated on every cycle (merge them across rooms with RoomStats.merge). */
+    public RoomStats stats() {
+        return stats;
+    }
+
     // Bootstrap using ServiceLocator for dependencies & wiring
     public static SmartRoomController createDefault(Path dataDir) {
         // Register core services
         ServiceLocator.register(Clock.class, new SystemClock());
-        ServiceLocator.registerFactory(Repository.class, () -> new FileRepository(dataDir));
-        ServiceLocator.register(RuleEngine.class, new DefaultRuleEngine());
+        ServiceLocator.registerFactory(Repository.class, () -> createRepository(dataDir));
+        ServiceLocator.register(RuleEngine.class, loadRules(dataDir.resolve("rules.txt")));
 
         Clock clock = ServiceLocator.resolve(Clock.class);
         Repository repo = ServiceLocator.resolve(Repository.class);
         RuleEngine rules = ServiceLocator.resolve(RuleEngine.class);
 
+        return createRoom(rules, repo, clock);
+    }
+
+    // -Dsmartroom.repository=compressed: Gorilla-compressed segments, closed on exit so the open block is written
+    private static Repository createRepository(Path dataDir) {
+        Repository opened = openRepository(dataDir);
+        if (!(opened instanceof CompressedSeriesRepository repo)) return opened;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                repo.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar repositório: " + e.getMessage());
+            }
+        }));
+        return repo;
+    }
+
+    /** Series repository selected by -Dsmartroom.repository under {@code dataDir}; closing it is up to the caller. */
+    public static Repository openRepository(Path dataDir) {
+        if ("compressed".equals(System.getProperty("smartroom.repository"))) return new CompressedSeriesRepository(dataDir);
+        return new BinarySeriesRepository(dataDir);
+    }
+
+    // User-defined rules when the file exists, otherwise the built-in ones
+    private static RuleEngine loadRules(Path rulesFile) {
+        if (!Files.exists(rulesFile)) return new DefaultRuleEngine();
+        try {
+            return CompiledRuleEngine.load(rulesFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Default room layout (3 sensors, 2 actuators) on top of already resolved services
+    public static SmartRoomController createRoom(RuleEngine rules, Repository repo, Clock clock) {
+        return createRoom(rules, repo, clock,
+                new FakeTemperatureSensor("TEMP001", "Sensor Temperatura"),
+                new FakePresenceSensor("PRES001", "Sensor Presença"),
+                new FakeLightSensor("LUX001", "Sensor Luminosidade"));
+    }
+
+    // Same layout with seeded sensors: the same seed replays the same readings, distinct seeds never share a stream
+    public static SmartRoomController createRoom(RuleEngine rules, Repository repo, Clock clock, long seed) {
+        return createRoom(rules, repo, clock,
+                new FakeTemperatureSensor("TEMP001", "Sensor Temperatura", 3 * seed),
+                new FakePresenceSensor("PRES001", "Sensor Presença", 3 * seed + 1),
+                new FakeLightSensor("LUX001", "Sensor Luminosidade", 3 * seed + 2));
+    }
+
+    private static SmartRoomController createRoom(RuleEngine rules, Repository repo, Clock clock, Sensor... sensors) {
         SmartRoomController c = new SmartRoomController(rules, repo, clock);
         // Sensors
-        c.addSensor(new FakeTemperatureSensor("TEMP001", "Sensor Temperatura"));
-        c.addSensor(new FakePresenceSensor("PRES001", "Sensor Presença"));
-        c.addSensor(new FakeLightSensor("LUX001", "Sensor Luminosidade"));
+        for (Sensor s : sensors) c.addSensor(s);
         // Actuators
         c.addActuator("Luz", new SimpleActuator("ACT001", "Luz"));
         c.addActuator("Ventilador", new SimpleActuator("ACT002", "Ventilador"));
+        c.setChangeDriven(Boolean.getBoolean("smartroom.changeDriven"));
+        // -Dsmartroom.actuators.holdMs=N: minimum time an actuator keeps a state before switching again
+        c.setActuatorDispatch(ActuatorBus.DIRECT, Duration.ofMillis(Long.getLong("smartroom.actuators.holdMs", 0)));
+        // -Dsmartroom.sensors.deadlineMs=N: parallel reads with a per-sensor deadline
+        long deadlineMs = Long.getLong("smartroom.sensors.deadlineMs", 0);
+        if (deadlineMs > 0) c.setReadDeadline(Duration.ofMillis(deadlineMs));
         return c;
     }
 }
@@ -0,0 +1,21 @@
+
+package main.java.com.smartroom.actuators;
+
+/**
+ * Transport that delivers actuator commands: a relay board, a field bus, a room gateway.
+ * {@link ActuatorCommandQueue} hands it every command of a cycle in one call, so an
+ * implementation can send them as a single frame instead of one round trip per actuator.
+ */
+public interface ActuatorBus {
+
+    /** For every bit i set in {@code changed}, switches {@code slots[i]} to bit i of {@code on}. */
+    void dispatch(Actuator[] slots, long changed, long on);
+
+    /** One turnOn()/turnOff() call per command, in slot order. */
+    ActuatorBus DIRECT = (slots, changed, on) -> {
+        for (long pending = changed; pending != 0; pending &= pending - 1) {
+            int i = Long.numberOfTrailingZeros(pending);
+            if ((on & (1L << i)) != 0) slots[i].turnOn(); else slots[i].turnOff();
+        }
+    };
+}
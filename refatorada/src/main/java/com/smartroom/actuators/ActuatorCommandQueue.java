@@ -0,0 +1,101 @@
+
+package main.java.com.smartroom.actuators;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns the state the rules want each cycle into the few commands that actually change
+ * something, sent to an {@link ActuatorBus} as one batch per cycle:
+ * <ul>
+ *   <li>an actuator already in the wanted state gets no command;</li>
+ *   <li>after switching, an actuator holds its state for at least the hold time; a change
+ *       wanted during the hold stays pending and is dropped if the rules flip back before it
+ *       expires, so noise around a threshold costs no relay clicks (hysteresis in time);</li>
+ *   <li>every command due in the cycle goes out in a single {@link ActuatorBus#dispatch}.</li>
+ * </ul>
+ * Counters compare the commands sent with the one-command-per-actuator-per-cycle baseline.
+ * Not thread-safe: owned by one controller, like {@link ActuatorState}.
+ */
+public final class ActuatorCommandQueue {
+
+    private final Actuator[] slots;
+    private final ActuatorBus bus;
+    private final long holdMillis;
+    private final long[] lastSwitch;
+    private long desired;
+    private long pending;
+    private long firstMillis = Long.MIN_VALUE;
+    private long lastMillis;
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public ActuatorCommandQueue(Actuator[] slots, ActuatorBus bus, long holdMillis) {
+        if (slots.length > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " actuators per queue");
+        }
+        this.slots = slots.clone();
+        this.bus = bus;
+        this.holdMillis = holdMillis;
+        this.lastSwitch = new long[slots.length];
+        Arrays.fill(lastSwitch, Long.MIN_VALUE / 2);
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].isOn()) desired |= 1L << i;
+        }
+    }
+
+    /** State wanted by the last {@link #submit} (pending changes included). */
+    public long desired() {
+        return desired;
+    }
+
+    /**
+     * Takes the cycle's wanted state and dispatches what is due.
+     * @param actual bits the actuators currently report
+     * @param wanted bits the rules want
+     */
+    public void submit(long actual, long wanted, long nowMillis) {
+        if (firstMillis == Long.MIN_VALUE) firstMillis = nowMillis;
+        lastMillis = nowMillis;
+        requested.addAndGet(slots.length);
+        long changes = actual ^ wanted;
+        // pending changes the rules took back before they were sent
+        coalesced.addAndGet(Long.bitCount(pending & ~changes));
+        pending = changes;
+        desired = wanted;
+
+        long due = 0;
+        for (long p = pending; p != 0; p &= p - 1) {
+            int i = Long.numberOfTrailingZeros(p);
+            if (nowMillis - lastSwitch[i] >= holdMillis) {
+                due |= 1L << i;
+                lastSwitch[i] = nowMillis;
+            }
+        }
+        if (due == 0) return;
+        bus.dispatch(slots, due, wanted);
+        pending &= ~due;
+        dispatched.addAndGet(Long.bitCount(due));
+        batches.incrementAndGet();
+    }
+
+    /** Commands the one-per-actuator-per-cycle baseline would have sent. */
+    public long requested() { return requested.get(); }
+
+    public long dispatched() { return dispatched.get(); }
+
+    /** Changes dropped because the rules reverted them within the hold time. */
+    public long coalesced() { return coalesced.get(); }
+
+    /** Bus calls made (at most one per cycle). */
+    public long batches() { return batches.get(); }
+
+    /** Commands per second avoided compared with the baseline, over the submitted period. */
+    public double savedPerSecond() {
+        long elapsed = lastMillis - firstMillis;
+        if (firstMillis == Long.MIN_VALUE || elapsed <= 0) return 0.0;
+        return (requested() - dispatched()) * 1000.0 / elapsed;
+    }
+}
@@ -0,0 +1,99 @@
+
+package main.java.com.smartroom.actuators;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On/off state of up to 64 actuators as a long bitset; slot i is names().get(i).
+ * The names list is interned, so every state with the same layout shares the same instance and
+ * consumers (rule engines, repositories) can cache their slot mapping by identity.
+ * Not thread-safe: owned by one controller cycle at a time.
+ */
+public final class ActuatorState {
+
+    private static final Map<List<String>, List<String>> LAYOUTS = new ConcurrentHashMap<>();
+
+    private final List<String> names;
+    private long bits;
+
+    public ActuatorState(List<String> names) {
+        if (names.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " actuators per state");
+        }
+        List<String> copy = List.copyOf(names);
+        this.names = LAYOUTS.computeIfAbsent(copy, k -> k);
+    }
+
+    /** Interned actuator layout; compare with == to detect a layout change. */
+    public List<String> names() { return names; }
+
+    public int size() { return names.size(); }
+
+    /** Slot of the named actuator, or -1. */
+    public int slotOf(String name) {
+        return names.indexOf(name);
+    }
+
+    public boolean isOn(int slot) {
+        return (bits & (1L << slot)) != 0;
+    }
+
+    public void set(int slot, boolean on) {
+        if (on) bits |= 1L << slot; else bits &= ~(1L << slot);
+    }
+
+    /** Sets the named actuator; ignored when it is not part of the layout. */
+    public void set(String name, boolean on) {
+        int slot = slotOf(name);
+        if (slot >= 0) set(slot, on);
+    }
+
+    public long bits() { return bits; }
+
+    public void setBits(long bits) { this.bits = bits; }
+
+    public void copyFrom(ActuatorState other) {
+        this.bits = other.bits;
+    }
+
+    /**
+     * For each target name the slot it has in {@code layout} (-1 if absent).
+     * Computed once per layout by consumers and then used with {@link #bitsFor(int[])}.
+     */
+    public static int[] slotsFor(List<String> layout, List<String> targetNames) {
+        int[] slots = new int[targetNames.size()];
+        for (int i = 0; i < slots.length; i++) slots[i] = layout.indexOf(targetNames.get(i));
+        return slots;
+    }
+
+    /** Bits re-ordered to a target layout: bit i is set when slot slots[i] is on. */
+    public long bitsFor(int[] slots) {
+        return remap(bits, slots);
+    }
+
+    /** Same as {@link #bitsFor(int[])} for a raw bitset saved from a state with the source layout. */
+    public static long remap(long bits, int[] slots) {
+        long out = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] >= 0 && (bits & (1L << slots[i])) != 0) out |= 1L << i;
+        }
+        return out;
+    }
+
+    /** Boxed name -> on view for the Map based APIs (allocates). */
+    public Map<String, Boolean> toMap() {
+        Map<String, Boolean> out = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) out.put(names.get(i), isOn(i));
+        return out;
+    }
+
+    /** Applies a name -> on map (as returned by the Map based RuleEngine) onto this state. */
+    public void apply(Map<String, Boolean> states) {
+        states.forEach((name, on) -> {
+            if (on != null) set(name, on);
+        });
+    }
+}
@@ -0,0 +1,92 @@
+
+package main.java.com.smartroom.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets: values below 64 ns get
+ * their own bucket, larger ones 32 linear sub-buckets per power of two, so quantiles stay
+ * within ~3% of the recorded value from 1 ns up to ~2.4 hours in a fixed 10 KB.
+ * {@link #record} is a handful of atomic adds, never blocks and never allocates
+ * (barring LongAdder cell growth on first contention).
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_SHIFT = 38;
+    private static final int BUCKETS = (MAX_SHIFT + 2) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        if (shift > MAX_SHIFT) return BUCKETS - 1;
+        return shift * SUB + (int) (value >>> shift);
+    }
+
+    // midpoint of the bucket's [lower, upper] range
+    static long value(int index) {
+        int shift = Math.max(0, index / SUB - 1);
+        long sub = index - (long) shift * SUB;
+        long lower = sub << shift;
+        long upper = ((sub + 1) << shift) - 1;
+        return lower + (upper - lower) / 2;
+    }
+
+    /**
+     * Point-in-time copy for reading. Recorders are not stopped, so a sample recorded
+     * concurrently may be reflected in the buckets but not yet in the sum (or vice versa).
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long count() { return count; }
+        public long sumNanos() { return sumNanos; }
+        public long maxNanos() { return maxNanos; }
+
+        /** Approximate quantile in nanoseconds (q between 0 and 1), exact max at q = 1. */
+        public long quantile(double q) {
+            if (count == 0) return 0;
+            if (q >= 1) return maxNanos;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(value(i), maxNanos);
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+
+package main.java.com.smartroom.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Process-wide registry of latency histograms, rendered in the Prometheus text format
+ * (as summaries, in seconds).
+ *
+ * Probes are written as {@code if (Metrics.ENABLED) ...}: with {@code -Dsmartroom.metrics=false}
+ * the flag is a constant false and the JIT drops the timing code entirely.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("smartroom.metrics"));
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    private record Family(String help, Map<String, LatencyHistogram> series) {}
+
+    private Metrics() {}
+
+    /**
+     * The histogram of {@code name} with one label, created on first use. Look it up once
+     * (e.g. into a static final) rather than per recording.
+     */
+    public static LatencyHistogram histogram(String name, String help, String label, String value) {
+        Family family = FAMILIES.computeIfAbsent(name, n -> new Family(help, new ConcurrentSkipListMap<>()));
+        return family.series().computeIfAbsent(label + "=\"" + value + "\"", l -> new LatencyHistogram());
+    }
+
+    /** Records the time since {@code startNanos} and returns the current time, for timing consecutive stages. */
+    public static long lap(LatencyHistogram histogram, long startNanos) {
+        long now = System.nanoTime();
+        histogram.record(now - startNanos);
+        return now;
+    }
+
+    /** Prometheus text exposition format (version 0.0.4). */
+    public static void render(StringBuilder sb) {
+        for (Map.Entry<String, Family> f : FAMILIES.entrySet()) {
+            String name = f.getKey();
+            sb.append("# HELP ").append(name).append(' ').append(f.getValue().help()).append('\n');
+            sb.append("# TYPE ").append(name).append(" summary\n");
+            for (Map.Entry<String, LatencyHistogram> s : f.getValue().series().entrySet()) {
+                String labels = s.getKey();
+                LatencyHistogram.Snapshot snap = s.getValue().snapshot();
+                for (double q : QUANTILES) {
+                    sb.append(name).append('{').append(labels).append(",quantile=\"").append(q).append("\"} ")
+                            .append(seconds(snap.quantile(q))).append('\n');
+                }
+                sb.append(name).append("_sum{").append(labels).append("} ").append(seconds(snap.sumNanos())).append('\n');
+                sb.append(name).append("_count{").append(labels).append("} ").append(snap.count()).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Writes the metrics for the node_exporter textfile collector; the file is replaced
+     * atomically so a scrape never sees it half written.
+     */
+    public static void writeTextFile(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        render(sb);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -0,0 +1,378 @@
+
+package main.java.com.smartroom.repository;
+
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.sensors.SensorType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decorator that takes snapshot persistence off the control loop (group commit).
+ * Snapshots from any number of rooms are copied into a bounded in-memory ring; a single writer
+ * thread drains it into a {@link SnapshotBatch} and hands the batch to the delegate with one
+ * {@link Repository#appendBatch} call (plus an optional {@link Repository#sync()} per batch).
+ * A batch is written once maxBatch snapshots are pending or flushInterval has passed since the
+ * first pending one. When the ring is full, BLOCK makes producers wait (backpressure) and
+ * DROP_OLDEST discards the oldest pending snapshot.
+ * {@link #room(Repository)} gives each room its own target repository behind the same ring and
+ * writer thread: every snapshot remembers its target and each batch is split into one
+ * appendBatch per target, so the rooms' histories stay apart. Only the room targets written most
+ * recently keep their file handles open (-Dsmartroom.repository.maxOpenRooms, default 256); the
+ * writer {@link Repository#release() releases} the least recently written one beyond that, so
+ * 10k rooms do not need 10k descriptors.
+ * Reports are written through synchronously.
+ */
+public class AsyncRepository implements Repository, Closeable {
+
+    public enum OverflowPolicy { BLOCK, DROP_OLDEST }
+
+    private static final int TYPES = SensorType.count();
+    private static final int MAX_OPEN_ROOMS = Integer.getInteger("smartroom.repository.maxOpenRooms", 256);
+
+    private final Repository delegate;
+    private final int maxBatch;
+    private final long flushIntervalNanos;
+    private final boolean syncEachBatch;
+    private final OverflowPolicy policy;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // ring of pending snapshots, guarded by lock
+    private final long[] millis;
+    private final double[] values;
+    private final long[] present;
+    private final long[] bits;
+    private final Object[] layouts;
+    private final Repository[] targets;
+    private int head;
+    private int count;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final SnapshotBatch batch;
+    // target of each batch entry, and the per-target slice handed to it (writer thread only)
+    private final Repository[] batchTargets;
+    private final SnapshotBatch slice;
+    private final boolean[] sliced;
+    private final List<Repository> rooms = new CopyOnWriteArrayList<>();
+    // room targets with an open handle, least recently written first (writer thread only)
+    private final LinkedHashMap<Repository, Boolean> openRooms = new LinkedHashMap<>(16, 0.75f, true);
+    private final Thread writer;
+    private volatile boolean closed;
+    private boolean flushRequested;
+
+    // metrics (guarded by lock)
+    private long enqueued;
+    private long dropped;
+    private long written;
+    private long batches;
+    private int lastBatchSize;
+    private int maxBatchSeen;
+    private int maxDepth;
+    private long failedBatches;
+    private long handled; // written + failed + dropped snapshots
+
+    public AsyncRepository(Repository delegate) {
+        this(delegate, 8192, 512, Duration.ofMillis(50), false, OverflowPolicy.BLOCK);
+    }
+
+    public AsyncRepository(Repository delegate, int capacity, int maxBatch, Duration flushInterval,
+                           boolean syncEachBatch, OverflowPolicy policy) {
+        if (capacity <= 0 || maxBatch <= 0) throw new IllegalArgumentException("capacity and maxBatch must be > 0");
+        this.delegate = delegate;
+        this.maxBatch = Math.min(maxBatch, capacity);
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.syncEachBatch = syncEachBatch;
+        this.policy = policy;
+        this.millis = new long[capacity];
+        this.values = new double[capacity * TYPES];
+        this.present = new long[capacity];
+        this.bits = new long[capacity];
+        this.layouts = new Object[capacity];
+        this.targets = new Repository[capacity];
+        this.batch = new SnapshotBatch(this.maxBatch);
+        this.batchTargets = new Repository[this.maxBatch];
+        this.slice = new SnapshotBatch(this.maxBatch);
+        this.sliced = new boolean[this.maxBatch];
+        this.writer = new Thread(this::writeLoop, "async-repository-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators) {
+        ActuatorState state = new ActuatorState(new ArrayList<>(actuators.keySet()));
+        state.apply(actuators);
+        appendSensorSnapshot(ts.atZone(zone).toInstant().toEpochMilli(), SensorFrame.fromMap(values), state);
+    }
+
+    @Override
+    public void appendSensorSnapshot(long epochMillis, SensorFrame frame, ActuatorState actuators) {
+        enqueue(delegate, epochMillis, frame, actuators);
+    }
+
+    /**
+     * A view that queues snapshots for {@code target} on this repository's ring and writer.
+     * Reports go straight to the target; {@link #close()} also closes every room target.
+     */
+    public Repository room(Repository target) {
+        rooms.add(target);
+        return new Repository() {
+            @Override
+            public void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators) {
+                ActuatorState state = new ActuatorState(new ArrayList<>(actuators.keySet()));
+                state.apply(actuators);
+                enqueue(target, ts.atZone(zone).toInstant().toEpochMilli(), SensorFrame.fromMap(values), state);
+            }
+
+            @Override
+            public void appendSensorSnapshot(long epochMillis, SensorFrame frame, ActuatorState actuators) {
+                enqueue(target, epochMillis, frame, actuators);
+            }
+
+            @Override
+            public void writeReport(String report) {
+                target.writeReport(report);
+            }
+
+            @Override
+            public void sync() {
+                flush();
+                target.sync();
+            }
+        };
+    }
+
+    private void enqueue(Repository target, long epochMillis, SensorFrame frame, ActuatorState actuators) {
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("AsyncRepository is closed");
+            if (count == millis.length) {
+                if (policy == OverflowPolicy.DROP_OLDEST) {
+                    layouts[head] = null;
+                    targets[head] = null;
+                    head = (head + 1) % millis.length;
+                    count--;
+                    dropped++;
+                    handled++;
+                } else {
+                    while (count == millis.length && !closed) notFull.awaitUninterruptibly();
+                    if (closed) throw new IllegalStateException("AsyncRepository is closed");
+                }
+            }
+            int i = (head + count) % millis.length;
+            millis[i] = epochMillis;
+            frame.copyTo(values, i * TYPES);
+            present[i] = frame.presentMask();
+            bits[i] = actuators.bits();
+            layouts[i] = actuators.names();
+            targets[i] = target;
+            count++;
+            enqueued++;
+            if (count > maxDepth) maxDepth = count;
+            if (count == 1 || count >= maxBatch) notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (count == 0 && !closed) notEmpty.awaitUninterruptibly();
+                if (count == 0) return; // closed and fully drained
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                long remaining;
+                while (count < maxBatch && !closed && !flushRequested
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        notEmpty.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        // only close() stops the writer
+                    }
+                }
+                drainIntoBatch();
+                if (count == 0) flushRequested = false;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            writeBatch();
+        }
+    }
+
+    private void drainIntoBatch() {
+        batch.clear();
+        int n = Math.min(count, maxBatch);
+        for (int k = 0; k < n; k++) {
+            batch.add(millis[head], values, head * TYPES, present[head], bits[head], layouts[head]);
+            batchTargets[k] = targets[head];
+            layouts[head] = null;
+            targets[head] = null;
+            head = (head + 1) % millis.length;
+        }
+        count -= n;
+    }
+
+    private void writeBatch() {
+        boolean ok = true;
+        try {
+            if (batch.size() > 0) writeByTarget();
+        } catch (RuntimeException e) {
+            ok = false;
+            System.err.println("Falha ao gravar lote de " + batch.size() + " snapshots: " + e.getMessage());
+        }
+        lock.lock();
+        try {
+            if (ok) written += batch.size(); else failedBatches++;
+            handled += batch.size();
+            batches++;
+            lastBatchSize = batch.size();
+            if (lastBatchSize > maxBatchSeen) maxBatchSeen = lastBatchSize;
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Whole batch to the target when there is only one (the common single-repository case),
+    // otherwise one slice per target, in enqueue order within each target
+    private void writeByTarget() {
+        int n = batch.size();
+        Repository first = batchTargets[0];
+        boolean single = true;
+        for (int i = 1; i < n && single; i++) single = batchTargets[i] == first;
+        if (single) {
+            first.appendBatch(batch);
+            if (syncEachBatch) first.sync();
+            keepOpen(first);
+        } else {
+            Arrays.fill(sliced, 0, n, false);
+            for (int i = 0; i < n; i++) {
+                if (sliced[i]) continue;
+                Repository target = batchTargets[i];
+                slice.clear();
+                for (int j = i; j < n; j++) {
+                    if (batchTargets[j] != target) continue;
+                    slice.add(batch, j);
+                    sliced[j] = true;
+                }
+                target.appendBatch(slice);
+                if (syncEachBatch) target.sync();
+                keepOpen(target);
+            }
+        }
+        Arrays.fill(batchTargets, 0, n, null);
+    }
+
+    // Marks a room target as just written and releases the least recent one beyond MAX_OPEN_ROOMS
+    private void keepOpen(Repository target) {
+        if (target == delegate) return;
+        openRooms.put(target, Boolean.TRUE);
+        if (openRooms.size() <= MAX_OPEN_ROOMS) return;
+        Iterator<Repository> eldest = openRooms.keySet().iterator();
+        Repository released = eldest.next();
+        eldest.remove();
+        try {
+            released.release();
+        } catch (RuntimeException e) {
+            System.err.println("Falha ao liberar repositório: " + e.getMessage());
+        }
+    }
+
+    /** Blocks until every snapshot enqueued so far has been handed to its repository. */
+    public void flush() {
+        lock.lock();
+        try {
+            long target = enqueued;
+            if (handled >= target) return;
+            flushRequested = true;
+            notEmpty.signal();
+            while (handled < target && writer.isAlive()) drained.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void sync() {
+        flush();
+        delegate.sync();
+    }
+
+    @Override
+    public void writeReport(String report) {
+        delegate.writeReport(report);
+    }
+
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String stats() {
+        lock.lock();
+        try {
+            return String.format("Fila: %d (máx %d) | Enfileirados: %d | Gravados: %d | Descartados: %d | Lotes: %d (último %d, máx %d, média %.1f)%s",
+                    count, maxDepth, enqueued, written, dropped, batches, lastBatchSize, maxBatchSeen,
+                    batches == 0 ? 0.0 : (double) written / batches,
+                    failedBatches == 0 ? "" : " | Lotes com falha: " + failedBatches);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long enqueuedCount() { lock.lock(); try { return enqueued; } finally { lock.unlock(); } }
+    public long writtenCount() { lock.lock(); try { return written; } finally { lock.unlock(); } }
+    public long droppedCount() { lock.lock(); try { return dropped; } finally { lock.unlock(); } }
+    public long batchCount() { lock.lock(); try { return batches; } finally { lock.unlock(); } }
+    public int lastBatchSize() { lock.lock(); try { return lastBatchSize; } finally { lock.unlock(); } }
+    public int maxQueueDepth() { lock.lock(); try { return maxDepth; } finally { lock.unlock(); } }
+
+    /** Drains pending snapshots, stops the writer and closes the delegate and room targets that are Closeable. */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.sync();
+        if (delegate instanceof Closeable c) c.close();
+        for (Repository room : rooms) {
+            room.sync();
+            if (room instanceof Closeable c) c.close();
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+
+package main.java.com.smartroom.repository;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Sequential cursor over the segments written by {@link BinarySeriesRepository}.
+ * Segments are visited in start-time order; a truncated trailing record (e.g. after a crash)
+ * ends its segment. Accessors refer to the record loaded by the last successful {@link #next()}.
+ *
+ * <pre>
+ * try (BinarySeriesReader r = new BinarySeriesReader(dataDir.resolve("series"))) {
+ *     while (r.next()) { r.timestampMillis(); r.value("temp"); r.isOn("Luz"); }
+ * }
+ * </pre>
+ */
+public class BinarySeriesReader implements Closeable {
+
+    private final List<Path> segments;
+    private int segmentIndex = 0;
+    private DataInputStream in;
+
+    private List<String> sensorKeys = List.of();
+    private List<String> actuatorNames = List.of();
+    private double[] values = new double[0];
+    private long timestampMillis;
+    private long actuatorMask;
+
+    public BinarySeriesReader(Path seriesDir) throws IOException {
+        List<Path> found = new ArrayList<>();
+        if (Files.isDirectory(seriesDir)) {
+            try (Stream<Path> files = Files.list(seriesDir)) {
+                files.filter(BinarySeriesReader::isSegment).forEach(found::add);
+            }
+        }
+        found.sort(Comparator.comparingLong(BinarySeriesReader::segmentStart));
+        this.segments = found;
+    }
+
+    private static boolean isSegment(Path p) {
+        String n = p.getFileName().toString();
+        return n.startsWith(BinarySeriesRepository.SEGMENT_PREFIX) && n.endsWith(BinarySeriesRepository.SEGMENT_SUFFIX);
+    }
+
+    private static long segmentStart(Path p) {
+        String n = p.getFileName().toString();
+        return Long.parseLong(n.substring(BinarySeriesRepository.SEGMENT_PREFIX.length(),
+                n.length() - BinarySeriesRepository.SEGMENT_SUFFIX.length()));
+    }
+
+    /** Advances to the next record; returns false when every segment is exhausted. */
+    public boolean next() throws IOException {
+        while (true) {
+            if (in == null && !openNextSegment()) return false;
+            try {
+                long ts = in.readLong();
+                for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+                actuatorMask = in.readLong();
+                timestampMillis = ts;
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+
+    private boolean openNextSegment() throws IOException {
+        while (segmentIndex < segments.size()) {
+            Path p = segments.get(segmentIndex++);
+            DataInputStream candidate = new DataInputStream(new BufferedInputStream(Files.newInputStream(p), 64 * 1024));
+            try {
+                if (candidate.readInt() != BinarySeriesRepository.MAGIC) throw new IOException("Not a series segment: " + p);
+                short version = candidate.readShort();
+                if (version != BinarySeriesRepository.VERSION) throw new IOException("Unsupported segment version " + version + ": " + p);
+                int sensorCount = candidate.readUnsignedShort();
+                int actuatorCount = candidate.readUnsignedShort();
+                List<String> keys = new ArrayList<>(sensorCount);
+                for (int i = 0; i < sensorCount; i++) keys.add(candidate.readUTF());
+                List<String> acts = new ArrayList<>(actuatorCount);
+                for (int i = 0; i < actuatorCount; i++) acts.add(candidate.readUTF());
+                sensorKeys = List.copyOf(keys);
+                actuatorNames = List.copyOf(acts);
+                if (values.length != sensorCount) values = new double[sensorCount];
+                in = candidate;
+                return true;
+            } catch (EOFException e) {
+                // segment created but header not fully written yet
+                candidate.close();
+            } catch (IOException e) {
+                candidate.close();
+                throw e;
+            }
+        }
+        return false;
+    }
+
+    public long timestampMillis() { return timestampMillis; }
+    public long actuatorMask() { return actuatorMask; }
+    public List<String> sensorKeys() { return sensorKeys; }
+    public List<String> actuatorNames() { return actuatorNames; }
+
+    public double value(int index) { return values[index]; }
+
+    /** Value for the given sensor key, or NaN when the key is not part of the current segment. */
+    public double value(String key) {
+        int i = sensorKeys.indexOf(key);
+        return i < 0 ? Double.NaN : values[i];
+    }
+
+    public boolean isOn(String actuator) {
+        int i = actuatorNames.indexOf(actuator);
+        return i >= 0 && (actuatorMask & (1L << i)) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+
+package main.java.com.smartroom.repository;
+
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.sensors.SensorType;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only time-series repository.
+ * Every snapshot becomes one fixed-width binary record appended to the current segment file:
+ *   [epochMillis:long][value:double x sensorKeys][actuatorMask:long]
+ * Missing sensor values are stored as NaN; actuator i maps to bit i of the mask.
+ * A new segment (series/sensors-&lt;epochMillis&gt;.seg) is started when the current one
+ * exceeds maxSegmentBytes or spans more than maxSegmentAge.
+ * Use {@link BinarySeriesReader} to read the history back in order.
+ */
+public class BinarySeriesRepository implements Repository, Closeable {
+
+    static final int MAGIC = 0x53525453; // "SRTS"
+    static final short VERSION = 1;
+    static final String SEGMENT_PREFIX = "sensors-";
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    public static final List<String> DEFAULT_SENSOR_KEYS = List.of("temp", "pres", "lux");
+    public static final List<String> DEFAULT_ACTUATORS = List.of("Luz", "Ventilador");
+
+    private final Path baseDir;
+    private final Path seriesDir;
+    private final List<String> sensorKeys;
+    private final List<String> actuatorNames;
+    private final long maxSegmentBytes;
+    private final long maxSegmentAgeMillis;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ByteBuffer record;
+    private final int[] columnTypes;
+    private List<String> boundLayout;
+    private int[] boundSlots;
+    private ByteBuffer batchBuffer;
+
+    // current segment; the channel is null while released (see release())
+    private Path segmentFile;
+    private FileChannel segment;
+    private long segmentStartMillis;
+    private long segmentBytes;
+
+    public BinarySeriesRepository(Path baseDir) {
+        this(baseDir, DEFAULT_SENSOR_KEYS, DEFAULT_ACTUATORS, 64L * 1024 * 1024, Duration.ofDays(1));
+    }
+
+    public BinarySeriesRepository(Path baseDir, List<String> sensorKeys, List<String> actuatorNames,
+                                  long maxSegmentBytes, Duration maxSegmentAge) {
+        if (actuatorNames.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " actuators per record");
+        }
+        this.baseDir = baseDir;
+        this.seriesDir = baseDir.resolve("series");
+        this.sensorKeys = List.copyOf(sensorKeys);
+        this.actuatorNames = List.copyOf(actuatorNames);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAgeMillis = maxSegmentAge.toMillis();
+        this.record = ByteBuffer.allocateDirect(recordSize(this.sensorKeys.size()));
+        this.columnTypes = columnTypes(this.sensorKeys);
+        try {
+            Files.createDirectories(seriesDir);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** SensorType ordinal stored in each column (-1 when the key is not a sensor type). */
+    static int[] columnTypes(List<String> sensorKeys) {
+        int[] types = new int[sensorKeys.size()];
+        for (int i = 0; i < types.length; i++) {
+            SensorType t = SensorType.fromKey(sensorKeys.get(i));
+            types[i] = t == null ? -1 : t.ordinal();
+        }
+        return types;
+    }
+
+    static int recordSize(int sensorCount) {
+        return Long.BYTES + sensorCount * Double.BYTES + Long.BYTES;
+    }
+
+    public Path getSeriesDir() {
+        return seriesDir;
+    }
+
+    @Override
+    public synchronized void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators) {
+        long millis = ts.atZone(zone).toInstant().toEpochMilli();
+        record.clear();
+        record.putLong(millis);
+        for (String key : sensorKeys) {
+            Double v = values.get(key);
+            record.putDouble(v == null ? Double.NaN : v);
+        }
+        long mask = 0;
+        for (int i = 0; i < actuatorNames.size(); i++) {
+            if (Boolean.TRUE.equals(actuators.get(actuatorNames.get(i)))) mask |= 1L << i;
+        }
+        record.putLong(mask);
+        write(millis);
+    }
+
+    @Override
+    public synchronized void appendSensorSnapshot(long epochMillis, SensorFrame frame, ActuatorState actuators) {
+        if (actuators.names() != boundLayout) {
+            boundSlots = ActuatorState.slotsFor(actuators.names(), actuatorNames);
+            boundLayout = actuators.names();
+        }
+        record.clear();
+        record.putLong(epochMillis);
+        for (int type : columnTypes) {
+            record.putDouble(type < 0 ? Double.NaN : frame.get(type));
+        }
+        record.putLong(actuators.bitsFor(boundSlots));
+        write(epochMillis);
+    }
+
+    private void write(long millis) {
+        record.flip();
+        try {
+            if (needsRoll(millis)) roll(millis);
+            segmentBytes += record.remaining();
+            reopen();
+            while (record.hasRemaining()) segment.write(record);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Encodes the whole batch into one buffer and writes it with a single call
+     * (split only where a segment rolls over).
+     */
+    @Override
+    public synchronized void appendBatch(SnapshotBatch batch) {
+        int size = recordSize(sensorKeys.size());
+        if (batchBuffer == null || batchBuffer.capacity() < batch.size() * size) {
+            batchBuffer = ByteBuffer.allocateDirect(Math.max(batch.capacity(), batch.size()) * size);
+        }
+        batchBuffer.clear();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                long millis = batch.millis(i);
+                if (needsRoll(millis)) {
+                    flushBatchBuffer();
+                    roll(millis);
+                }
+                if (batch.actuatorLayout(i) != boundLayout) {
+                    boundSlots = ActuatorState.slotsFor(batch.actuatorLayout(i), actuatorNames);
+                    boundLayout = batch.actuatorLayout(i);
+                }
+                batchBuffer.putLong(millis);
+                for (int type : columnTypes) {
+                    batchBuffer.putDouble(type < 0 ? Double.NaN : batch.value(i, type));
+                }
+                batchBuffer.putLong(ActuatorState.remap(batch.actuatorBits(i), boundSlots));
+                segmentBytes += size;
+            }
+            flushBatchBuffer();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void flushBatchBuffer() throws IOException {
+        batchBuffer.flip();
+        if (batchBuffer.hasRemaining()) reopen();
+        while (batchBuffer.hasRemaining()) segment.write(batchBuffer);
+        batchBuffer.clear();
+    }
+
+    @Override
+    public synchronized void sync() {
+        try {
+            if (segment != null) {
+                segment.force(false);
+            } else if (segmentFile != null) {
+                // released: fsync through a short-lived handle on the same file
+                try (FileChannel ch = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+                    ch.force(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Closes the segment channel; the next append reopens the same segment for append. */
+    @Override
+    public synchronized void release() {
+        try {
+            if (segment != null) segment.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            segment = null;
+        }
+    }
+
+    private void reopen() throws IOException {
+        if (segment == null) segment = FileChannel.open(segmentFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private boolean needsRoll(long millis) {
+        return segmentFile == null
+                || segmentBytes >= maxSegmentBytes
+                || millis - segmentStartMillis >= maxSegmentAgeMillis;
+    }
+
+    private void roll(long millis) throws IOException {
+        if (segment != null) segment.close();
+        // the timestamp in the file name keeps segments sorted; bump it if two segments start in the same ms
+        long start = millis;
+        Path file;
+        while (Files.exists(file = seriesDir.resolve(SEGMENT_PREFIX + start + SEGMENT_SUFFIX))) start++;
+        segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentFile = file;
+        segmentStartMillis = millis;
+        segmentBytes = segment.write(ByteBuffer.wrap(header()));
+    }
+
+    private byte[] header() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(sensorKeys.size());
+            out.writeShort(actuatorNames.size());
+            for (String k : sensorKeys) out.writeUTF(k);
+            for (String a : actuatorNames) out.writeUTF(a);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public synchronized void writeReport(String report) {
+        try {
+            Files.writeString(baseDir.resolve("reports.txt"), report, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segmentFile = null;
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+
+package main.java.com.smartroom.repository;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Sequential cursor over the segments written by {@link CompressedSeriesRepository}, with the
+ * same accessors as {@link BinarySeriesReader}. Segments are visited in start-time order and
+ * decoded one block at a time; a truncated trailing block (e.g. after a crash) ends its segment.
+ *
+ * <pre>
+ * try (CompressedSeriesReader r = new CompressedSeriesReader(dataDir.resolve("series"))) {
+ *     while (r.next()) { r.timestampMillis(); r.value("temp"); r.isOn("Luz"); }
+ * }
+ * </pre>
+ */
+public class CompressedSeriesReader implements Closeable {
+
+    private final List<Path> segments;
+    private int segmentIndex = 0;
+    private DataInputStream in;
+    private SeriesBlockDecoder decoder;
+    private byte[] block = new byte[16 * 1024];
+
+    private List<String> sensorKeys = List.of();
+    private List<String> actuatorNames = List.of();
+
+    public CompressedSeriesReader(Path seriesDir) throws IOException {
+        List<Path> found = new ArrayList<>();
+        if (Files.isDirectory(seriesDir)) {
+            try (Stream<Path> files = Files.list(seriesDir)) {
+                files.filter(CompressedSeriesReader::isSegment).forEach(found::add);
+            }
+        }
+        found.sort(Comparator.comparingLong(CompressedSeriesReader::segmentStart));
+        this.segments = found;
+    }
+
+    private static boolean isSegment(Path p) {
+        String n = p.getFileName().toString();
+        return n.startsWith(BinarySeriesRepository.SEGMENT_PREFIX) && n.endsWith(CompressedSeriesRepository.SEGMENT_SUFFIX);
+    }
+
+    private static long segmentStart(Path p) {
+        String n = p.getFileName().toString();
+        return Long.parseLong(n.substring(BinarySeriesRepository.SEGMENT_PREFIX.length(),
+                n.length() - CompressedSeriesRepository.SEGMENT_SUFFIX.length()));
+    }
+
+    /** Advances to the next record; returns false when every segment is exhausted. */
+    public boolean next() throws IOException {
+        while (true) {
+            if (decoder != null && decoder.next()) return true;
+            if (in == null && !openNextSegment()) return false;
+            if (!readBlock()) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+
+    // Loads the next complete block of the open segment into the decoder
+    private boolean readBlock() throws IOException {
+        try {
+            in.readFully(block, 0, SeriesBlockEncoder.HEADER_BYTES);
+            int payload = ByteBuffer.wrap(block).getInt(SeriesBlockEncoder.HEADER_BYTES - Integer.BYTES);
+            int length = SeriesBlockEncoder.HEADER_BYTES + payload;
+            if (block.length < length) {
+                byte[] bigger = new byte[Math.max(length, block.length * 2)];
+                System.arraycopy(block, 0, bigger, 0, SeriesBlockEncoder.HEADER_BYTES);
+                block = bigger;
+            }
+            in.readFully(block, SeriesBlockEncoder.HEADER_BYTES, payload);
+            decoder.load(ByteBuffer.wrap(block, 0, length));
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private boolean openNextSegment() throws IOException {
+        while (segmentIndex < segments.size()) {
+            Path p = segments.get(segmentIndex++);
+            DataInputStream candidate = new DataInputStream(new BufferedInputStream(Files.newInputStream(p), 64 * 1024));
+            try {
+                if (candidate.readInt() != CompressedSeriesRepository.MAGIC) throw new IOException("Not a compressed series segment: " + p);
+                short version = candidate.readShort();
+                if (version != CompressedSeriesRepository.VERSION) throw new IOException("Unsupported segment version " + version + ": " + p);
+                int sensorCount = candidate.readUnsignedShort();
+                int actuatorCount = candidate.readUnsignedShort();
+                candidate.readInt(); // records per block, informational
+                List<String> keys = new ArrayList<>(sensorCount);
+                for (int i = 0; i < sensorCount; i++) keys.add(candidate.readUTF());
+                List<String> acts = new ArrayList<>(actuatorCount);
+                for (int i = 0; i < actuatorCount; i++) acts.add(candidate.readUTF());
+                // the previous decoder is exhausted; keep it when the layout did not change
+                if (decoder == null || !keys.equals(sensorKeys) || !acts.equals(actuatorNames)) {
+                    sensorKeys = List.copyOf(keys);
+                    actuatorNames = List.copyOf(acts);
+                    decoder = new SeriesBlockDecoder(BinarySeriesRepository.columnTypes(sensorKeys), actuatorCount);
+                }
+                in = candidate;
+                return true;
+            } catch (EOFException e) {
+                // segment created but header not fully written yet
+                candidate.close();
+            } catch (IOException e) {
+                candidate.close();
+                throw e;
+            }
+        }
+        return false;
+    }
+
+    public long timestampMillis() { return decoder.timestampMillis(); }
+    public long actuatorMask() { return decoder.actuatorMask(); }
+    public List<String> sensorKeys() { return sensorKeys; }
+    public List<String> actuatorNames() { return actuatorNames; }
+
+    public double value(int index) { return decoder.value(index); }
+
+    /** Value for the given sensor key, or NaN when the key is not part of the current segment. */
+    public double value(String key) {
+        int i = sensorKeys.indexOf(key);
+        return i < 0 ? Double.NaN : decoder.value(i);
+    }
+
+    public boolean isOn(String actuator) {
+        int i = actuatorNames.indexOf(actuator);
+        return i >= 0 && (decoder.actuatorMask() & (1L << i)) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+
+package main.java.com.smartroom.repository;
+
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compressed variant of {@link BinarySeriesRepository}: snapshots are buffered into blocks of up
+ * to blockRecords records, encoded by {@link SeriesBlockEncoder} (delta-of-delta timestamps,
+ * XOR-encoded values, bit-packed presence and actuator changes) and appended to the current
+ * segment (series/sensors-&lt;epochMillis&gt;.gseg) as one write per block.
+ * The segment header matches the binary one apart from the magic and carries the block size.
+ *
+ * The open block lives in memory until it fills up, {@link #sync()} or {@link #close()}:
+ * a crash loses at most one block, so callers that need every snapshot on disk sync
+ * (AsyncRepository can do it per batch) at the cost of smaller blocks.
+ * Use {@link CompressedSeriesReader} to read the history back in order.
+ */
+public class CompressedSeriesRepository implements Repository, Closeable {
+
+    static final int MAGIC = 0x53525447; // "SRTG"
+    static final short VERSION = 1;
+    static final String SEGMENT_SUFFIX = ".gseg";
+
+    private final Path baseDir;
+    private final Path seriesDir;
+    private final List<String> sensorKeys;
+    private final List<String> actuatorNames;
+    private final int blockRecords;
+    private final long maxSegmentBytes;
+    private final long maxSegmentAgeMillis;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final int[] columnTypes;
+    private final double[] row;
+    private final SeriesBlockEncoder encoder;
+    private ByteBuffer blockBuffer = ByteBuffer.allocateDirect(16 * 1024);
+    private List<String> boundLayout;
+    private int[] boundSlots;
+
+    // current segment; the channel is null while released (see release())
+    private Path segmentFile;
+    private FileChannel segment;
+    private long segmentStartMillis;
+    private long segmentBytes;
+
+    public CompressedSeriesRepository(Path baseDir) {
+        this(baseDir, BinarySeriesRepository.DEFAULT_SENSOR_KEYS, BinarySeriesRepository.DEFAULT_ACTUATORS,
+                1024, 64L * 1024 * 1024, Duration.ofDays(1));
+    }
+
+    public CompressedSeriesRepository(Path baseDir, List<String> sensorKeys, List<String> actuatorNames,
+                                      int blockRecords, long maxSegmentBytes, Duration maxSegmentAge) {
+        if (blockRecords < 1) throw new IllegalArgumentException("blockRecords must be positive");
+        this.baseDir = baseDir;
+        this.seriesDir = baseDir.resolve("series");
+        this.sensorKeys = List.copyOf(sensorKeys);
+        this.actuatorNames = List.copyOf(actuatorNames);
+        this.blockRecords = blockRecords;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAgeMillis = maxSegmentAge.toMillis();
+        this.columnTypes = BinarySeriesRepository.columnTypes(this.sensorKeys);
+        this.row = new double[this.sensorKeys.size()];
+        this.encoder = new SeriesBlockEncoder(columnTypes, this.actuatorNames.size());
+        try {
+            Files.createDirectories(seriesDir);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Path getSeriesDir() {
+        return seriesDir;
+    }
+
+    @Override
+    public synchronized void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators) {
+        for (int i = 0; i < row.length; i++) {
+            Double v = values.get(sensorKeys.get(i));
+            row[i] = v == null ? Double.NaN : v;
+        }
+        long mask = 0;
+        for (int i = 0; i < actuatorNames.size(); i++) {
+            if (Boolean.TRUE.equals(actuators.get(actuatorNames.get(i)))) mask |= 1L << i;
+        }
+        append(ts.atZone(zone).toInstant().toEpochMilli(), mask);
+    }
+
+    @Override
+    public synchronized void appendSensorSnapshot(long epochMillis, SensorFrame frame, ActuatorState actuators) {
+        if (actuators.names() != boundLayout) {
+            boundSlots = ActuatorState.slotsFor(actuators.names(), actuatorNames);
+            boundLayout = actuators.names();
+        }
+        for (int i = 0; i < row.length; i++) {
+            row[i] = columnTypes[i] < 0 ? Double.NaN : frame.get(columnTypes[i]);
+        }
+        append(epochMillis, actuators.bitsFor(boundSlots));
+    }
+
+    private void append(long millis, long actuatorMask) {
+        try {
+            if (needsRoll(millis)) {
+                flushBlock();
+                roll(millis);
+            }
+            encoder.append(millis, row, actuatorMask);
+            if (encoder.size() >= blockRecords) flushBlock();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (encoder.size() == 0) return;
+        if (blockBuffer.capacity() < encoder.encodedBytes()) {
+            blockBuffer = ByteBuffer.allocateDirect(Math.max(encoder.encodedBytes(), blockBuffer.capacity() * 2));
+        }
+        blockBuffer.clear();
+        encoder.writeTo(blockBuffer);
+        blockBuffer.flip();
+        segmentBytes += blockBuffer.remaining();
+        reopen();
+        while (blockBuffer.hasRemaining()) segment.write(blockBuffer);
+        encoder.reset();
+    }
+
+    /** Writes the open block (even if partial) and forces the segment to stable storage. */
+    @Override
+    public synchronized void sync() {
+        try {
+            flushBlock();
+            if (segment != null) {
+                segment.force(false);
+            } else if (segmentFile != null) {
+                // released: fsync through a short-lived handle on the same file
+                try (FileChannel ch = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+                    ch.force(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes the segment channel; the open block stays in memory and the next block written
+     * reopens the same segment for append.
+     */
+    @Override
+    public synchronized void release() {
+        try {
+            if (segment != null) segment.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            segment = null;
+        }
+    }
+
+    private void reopen() throws IOException {
+        if (segment == null) segment = FileChannel.open(segmentFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private boolean needsRoll(long millis) {
+        return segmentFile == null
+                || segmentBytes >= maxSegmentBytes
+                || millis - segmentStartMillis >= maxSegmentAgeMillis;
+    }
+
+    private void roll(long millis) throws IOException {
+        if (segment != null) segment.close();
+        // the timestamp in the file name keeps segments sorted; bump it if two segments start in the same ms
+        long start = millis;
+        Path file;
+        while (Files.exists(file = seriesDir.resolve(BinarySeriesRepository.SEGMENT_PREFIX + start + SEGMENT_SUFFIX))) start++;
+        segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentFile = file;
+        segmentStartMillis = millis;
+        segmentBytes = segment.write(ByteBuffer.wrap(header()));
+    }
+
+    private byte[] header() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(sensorKeys.size());
+            out.writeShort(actuatorNames.size());
+            out.writeInt(blockRecords);
+            for (String k : sensorKeys) out.writeUTF(k);
+            for (String a : actuatorNames) out.writeUTF(a);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public synchronized void writeReport(String report) {
+        try {
+            Files.writeString(baseDir.resolve("reports.txt"), report, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (segmentFile != null) {
+            flushBlock();
+            segmentFile = null;
+        }
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+}
@@ -22,7 +22,7 @@ public class FileRepository implements Repository {
     }
 
     @Override
-    public void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators) {
+    public synchronized void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators) {
         StringBuilder sb = new StringBuilder();
         sb.append("=== DADOS DOS SENSORES ===\n");
         sb.append("Timestamp: ").append(ts.format(fmt)).append("\n");
@@ -53,7 +53,7 @@ public class FileRepository implements Repository {
     }
 
     @Override
-    public void writeReport(String report) {
+    public synchronized void writeReport(String report) {
         try {
             Files.writeString(baseDir.resolve("reports.txt"), report, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         } catch (IOException e) {
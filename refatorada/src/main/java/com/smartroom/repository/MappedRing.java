@@ -0,0 +1,88 @@
+
+package main.java.com.smartroom.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File layout shared by {@link MappedRingRepository} (writer) and {@link MappedRingReader}.
+ *
+ * Header (HEADER_SIZE bytes): magic, version, capacity, sensorCount, actuatorCount, slotSize,
+ * last published sequence (long, 8-aligned), then the sensor keys and actuator names as
+ * length-prefixed UTF-8 strings.
+ * Slot i holds sequence s where i = (s - 1) % capacity:
+ *   [stamp:long][epochMillis:long][value:double x sensorCount][actuatorMask:long]
+ * stamp is 2s-1 while the slot is being written and 2s once it is complete (per-slot seqlock),
+ * so readers never block the writer and detect torn or overwritten slots by re-checking it.
+ */
+final class MappedRing {
+
+    static final int MAGIC = 0x53525247; // "SRRG"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 512;
+
+    static final int OFF_MAGIC = 0;
+    static final int OFF_VERSION = 4;
+    static final int OFF_CAPACITY = 8;
+    static final int OFF_SENSORS = 12;
+    static final int OFF_ACTUATORS = 16;
+    static final int OFF_SLOT_SIZE = 20;
+    static final int OFF_PUBLISHED = 24;
+    static final int OFF_NAMES = 32;
+
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private MappedRing() {}
+
+    static int slotSize(int sensorCount) {
+        return Long.BYTES * 3 + sensorCount * Double.BYTES;
+    }
+
+    static long fileSize(int capacity, int sensorCount) {
+        return HEADER_SIZE + (long) capacity * slotSize(sensorCount);
+    }
+
+    static int slotOffset(long sequence, int capacity, int slotSize) {
+        return HEADER_SIZE + (int) ((sequence - 1) % capacity) * slotSize;
+    }
+
+    static void writeNames(ByteBuffer buf, List<String> sensorKeys, List<String> actuatorNames) {
+        buf.position(OFF_NAMES);
+        for (String s : sensorKeys) putString(buf, s);
+        for (String s : actuatorNames) putString(buf, s);
+        buf.position(0);
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (buf.position() + Short.BYTES + bytes.length > HEADER_SIZE) {
+            throw new IllegalArgumentException("Sensor/actuator names do not fit in the ring header");
+        }
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    static List<String> readNames(ByteBuffer buf, int offset, int count) {
+        List<String> out = new ArrayList<>(count);
+        int pos = offset;
+        for (int i = 0; i < count; i++) {
+            int len = buf.getShort(pos) & 0xFFFF;
+            byte[] bytes = new byte[len];
+            buf.get(pos + Short.BYTES, bytes);
+            out.add(new String(bytes, StandardCharsets.UTF_8));
+            pos += Short.BYTES + len;
+        }
+        return out;
+    }
+
+    static int namesEnd(ByteBuffer buf, int count) {
+        int pos = OFF_NAMES;
+        for (int i = 0; i < count; i++) pos += Short.BYTES + (buf.getShort(pos) & 0xFFFF);
+        return pos;
+    }
+}
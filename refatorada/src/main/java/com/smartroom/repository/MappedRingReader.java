@@ -0,0 +1,131 @@
+
+package main.java.com.smartroom.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Lock-free reader for a ring written by {@link MappedRingRepository}, usable from another
+ * thread or another process (e.g. the dashboard or the report generator).
+ * Readers follow sequence numbers: {@link #latestSequence()} is the newest published snapshot and
+ * {@link #read(long)} loads one snapshot, returning false if it was not published yet or was
+ * overwritten while being read (the caller just skips ahead). Accessors are only meaningful
+ * after a read that returned true.
+ *
+ * <pre>
+ * long next = reader.oldestSequence();
+ * while (next &lt;= reader.latestSequence()) {
+ *     if (reader.read(next)) { reader.timestampMillis(); reader.value("temp"); }
+ *     next++;
+ * }
+ * </pre>
+ */
+public class MappedRingReader implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final int capacity;
+    private final int slotSize;
+    private final List<String> sensorKeys;
+    private final List<String> actuatorNames;
+    private final double[] values;
+    private long timestampMillis;
+    private long actuatorMask;
+
+    public MappedRingReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buf.order(ByteOrder.nativeOrder());
+        if (buf.capacity() < MappedRing.HEADER_SIZE || buf.getInt(MappedRing.OFF_MAGIC) != MappedRing.MAGIC) {
+            channel.close();
+            throw new IOException("Not an initialized snapshot ring: " + file);
+        }
+        VarHandle.acquireFence();
+        if (buf.getInt(MappedRing.OFF_VERSION) != MappedRing.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported ring version: " + file);
+        }
+        this.capacity = buf.getInt(MappedRing.OFF_CAPACITY);
+        int sensorCount = buf.getInt(MappedRing.OFF_SENSORS);
+        int actuatorCount = buf.getInt(MappedRing.OFF_ACTUATORS);
+        this.slotSize = buf.getInt(MappedRing.OFF_SLOT_SIZE);
+        this.sensorKeys = List.copyOf(MappedRing.readNames(buf, MappedRing.OFF_NAMES, sensorCount));
+        this.actuatorNames = List.copyOf(MappedRing.readNames(buf, MappedRing.namesEnd(buf, sensorCount), actuatorCount));
+        this.values = new double[sensorCount];
+    }
+
+    public int capacity() { return capacity; }
+
+    /** Newest published sequence (0 when nothing was written yet). */
+    public long latestSequence() {
+        return (long) MappedRing.LONGS.getAcquire(buf, MappedRing.OFF_PUBLISHED);
+    }
+
+    /** Oldest sequence that may still be in the ring. */
+    public long oldestSequence() {
+        return Math.max(1, latestSequence() - capacity + 1);
+    }
+
+    /** Loads snapshot {@code sequence}; false if it is not (or no longer) available. */
+    public boolean read(long sequence) {
+        if (sequence < 1) return false;
+        int base = MappedRing.slotOffset(sequence, capacity, slotSize);
+        long expected = 2 * sequence;
+        if ((long) MappedRing.LONGS.getAcquire(buf, base) != expected) return false;
+
+        int pos = base + Long.BYTES;
+        long ts = buf.getLong(pos);
+        pos += Long.BYTES;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buf.getDouble(pos);
+            pos += Double.BYTES;
+        }
+        long mask = buf.getLong(pos);
+
+        VarHandle.loadLoadFence();
+        if ((long) MappedRing.LONGS.getOpaque(buf, base) != expected) return false;
+        timestampMillis = ts;
+        actuatorMask = mask;
+        return true;
+    }
+
+    /** Loads the newest snapshot; false if the ring is empty or kept being overwritten during the read. */
+    public boolean readLatest() {
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long s = latestSequence();
+            if (s == 0) return false;
+            if (read(s)) return true;
+        }
+        return false;
+    }
+
+    public long timestampMillis() { return timestampMillis; }
+    public long actuatorMask() { return actuatorMask; }
+    public List<String> sensorKeys() { return sensorKeys; }
+    public List<String> actuatorNames() { return actuatorNames; }
+
+    public double value(int index) { return values[index]; }
+
+    /** Value for the given sensor key, or NaN when the key is not part of this ring. */
+    public double value(String key) {
+        int i = sensorKeys.indexOf(key);
+        return i < 0 ? Double.NaN : values[i];
+    }
+
+    public boolean isOn(String actuator) {
+        int i = actuatorNames.indexOf(actuator);
+        return i >= 0 && (actuatorMask & (1L << i)) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
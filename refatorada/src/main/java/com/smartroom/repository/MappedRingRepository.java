@@ -0,0 +1,190 @@
+
+package main.java.com.smartroom.repository;
+
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the last N snapshots of one room in a memory-mapped ring file.
+ * appendSensorSnapshot is a handful of stores into the mapping: no syscall and no text encoding.
+ * The OS writes the pages back in the background; call {@link #force()} when durability matters.
+ * Readers in other threads or processes use {@link MappedRingReader} with sequence numbers
+ * and never take a lock (see {@link MappedRing} for the layout).
+ * Reopening an existing ring with the same shape continues after its last sequence.
+ */
+public class MappedRingRepository implements Repository, Closeable {
+
+    private final Path file;
+    private final List<String> sensorKeys;
+    private final List<String> actuatorNames;
+    private final int capacity;
+    private final int slotSize;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final int[] columnTypes;
+    private List<String> boundLayout;
+    private int[] boundSlots;
+    private long sequence;
+
+    public MappedRingRepository(Path file, int capacity) {
+        this(file, capacity, BinarySeriesRepository.DEFAULT_SENSOR_KEYS, BinarySeriesRepository.DEFAULT_ACTUATORS);
+    }
+
+    public MappedRingRepository(Path file, int capacity, List<String> sensorKeys, List<String> actuatorNames) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+        if (actuatorNames.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " actuators per record");
+        }
+        this.file = file;
+        this.sensorKeys = List.copyOf(sensorKeys);
+        this.actuatorNames = List.copyOf(actuatorNames);
+        this.capacity = capacity;
+        this.slotSize = MappedRing.slotSize(this.sensorKeys.size());
+        this.columnTypes = BinarySeriesRepository.columnTypes(this.sensorKeys);
+        long size = MappedRing.fileSize(capacity, this.sensorKeys.size());
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Ring too large for a single mapping");
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean reuse = channel.size() == size;
+            this.buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.order(ByteOrder.nativeOrder());
+            if (reuse && matchesHeader()) {
+                sequence = (long) MappedRing.LONGS.getAcquire(buf, MappedRing.OFF_PUBLISHED);
+            } else {
+                initHeader();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean matchesHeader() {
+        return buf.getInt(MappedRing.OFF_MAGIC) == MappedRing.MAGIC
+                && buf.getInt(MappedRing.OFF_VERSION) == MappedRing.VERSION
+                && buf.getInt(MappedRing.OFF_CAPACITY) == capacity
+                && buf.getInt(MappedRing.OFF_SENSORS) == sensorKeys.size()
+                && buf.getInt(MappedRing.OFF_ACTUATORS) == actuatorNames.size()
+                && buf.getInt(MappedRing.OFF_SLOT_SIZE) == slotSize
+                && MappedRing.readNames(buf, MappedRing.OFF_NAMES, sensorKeys.size() + actuatorNames.size())
+                        .equals(concat(sensorKeys, actuatorNames));
+    }
+
+    private static List<String> concat(List<String> a, List<String> b) {
+        List<String> out = new ArrayList<>(a);
+        out.addAll(b);
+        return out;
+    }
+
+    private void initHeader() {
+        for (int i = 0; i < buf.capacity(); i += Long.BYTES) buf.putLong(i, 0L);
+        buf.putInt(MappedRing.OFF_VERSION, MappedRing.VERSION);
+        buf.putInt(MappedRing.OFF_CAPACITY, capacity);
+        buf.putInt(MappedRing.OFF_SENSORS, sensorKeys.size());
+        buf.putInt(MappedRing.OFF_ACTUATORS, actuatorNames.size());
+        buf.putInt(MappedRing.OFF_SLOT_SIZE, slotSize);
+        MappedRing.writeNames(buf, sensorKeys, actuatorNames);
+        MappedRing.LONGS.setRelease(buf, MappedRing.OFF_PUBLISHED, 0L);
+        // magic last: a reader that sees it also sees a complete header
+        VarHandle.releaseFence();
+        buf.putInt(MappedRing.OFF_MAGIC, MappedRing.MAGIC);
+        sequence = 0;
+    }
+
+    public Path getFile() { return file; }
+    public int getCapacity() { return capacity; }
+
+    /** Sequence of the last published snapshot (0 when empty). */
+    public synchronized long lastSequence() { return sequence; }
+
+    @Override
+    public synchronized void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators) {
+        int pos = beginSlot(ts.atZone(zone).toInstant().toEpochMilli());
+        for (String key : sensorKeys) {
+            Double v = values.get(key);
+            buf.putDouble(pos, v == null ? Double.NaN : v);
+            pos += Double.BYTES;
+        }
+        long mask = 0;
+        for (int i = 0; i < actuatorNames.size(); i++) {
+            if (Boolean.TRUE.equals(actuators.get(actuatorNames.get(i)))) mask |= 1L << i;
+        }
+        buf.putLong(pos, mask);
+        publish();
+    }
+
+    @Override
+    public synchronized void appendSensorSnapshot(long epochMillis, SensorFrame frame, ActuatorState actuators) {
+        if (actuators.names() != boundLayout) {
+            boundSlots = ActuatorState.slotsFor(actuators.names(), actuatorNames);
+            boundLayout = actuators.names();
+        }
+        int pos = beginSlot(epochMillis);
+        for (int type : columnTypes) {
+            buf.putDouble(pos, type < 0 ? Double.NaN : frame.get(type));
+            pos += Double.BYTES;
+        }
+        buf.putLong(pos, actuators.bitsFor(boundSlots));
+        publish();
+    }
+
+    // Marks the next slot as being written and stores the timestamp; returns the offset of the values
+    private int beginSlot(long epochMillis) {
+        long s = sequence + 1;
+        int base = MappedRing.slotOffset(s, capacity, slotSize);
+        MappedRing.LONGS.setOpaque(buf, base, 2 * s - 1);
+        VarHandle.storeStoreFence();
+        buf.putLong(base + Long.BYTES, epochMillis);
+        return base + 2 * Long.BYTES;
+    }
+
+    private void publish() {
+        long s = sequence + 1;
+        int base = MappedRing.slotOffset(s, capacity, slotSize);
+        MappedRing.LONGS.setRelease(buf, base, 2 * s);
+        MappedRing.LONGS.setRelease(buf, MappedRing.OFF_PUBLISHED, s);
+        sequence = s;
+    }
+
+    /** Flushes the mapped pages to disk. */
+    public void force() {
+        buf.force();
+    }
+
+    @Override
+    public void sync() {
+        force();
+    }
+
+    @Override
+    public synchronized void writeReport(String report) {
+        Path target = file.resolveSibling("reports.txt");
+        try {
+            Files.writeString(target, report, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buf.force();
+        channel.close();
+    }
+}
@@ -1,10 +1,59 @@
 
 package main.java.com.smartroom.repository;
 
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Map;
 
 public interface Repository {
     void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators);
     void writeReport(String report);
+
+    /**
+     * Primitive variant used by the control cycle. Binary repositories override it to persist
+     * without boxing; the default converts to the Map based method.
+     */
+    default void appendSensorSnapshot(long epochMillis, SensorFrame frame, ActuatorState actuators) {
+        LocalDateTime ts = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        appendSensorSnapshot(ts, frame.toMap(), actuators.toMap());
+    }
+
+    /**
+     * Persists every snapshot of the batch, in order. Repositories that can do so override it
+     * to issue a single write; the default appends them one by one.
+     */
+    default void appendBatch(SnapshotBatch batch) {
+        SensorFrame frame = new SensorFrame();
+        ActuatorState state = null;
+        for (int i = 0; i < batch.size(); i++) {
+            batch.loadFrame(i, frame);
+            if (state == null || state.names() != batch.actuatorLayout(i)) state = new ActuatorState(batch.actuatorLayout(i));
+            state.setBits(batch.actuatorBits(i));
+            appendSensorSnapshot(batch.millis(i), frame, state);
+        }
+    }
+
+    /**
+     * Change-driven persistence: called only for cycles where something changed, with the sensor
+     * types (bit = SensorType ordinal) and actuator slots that changed since the previous call.
+     * Unchanged values hold until the next record. The default stores a full snapshot.
+     */
+    default void appendSensorDelta(long epochMillis, SensorFrame frame, ActuatorState actuators,
+                                   long changedSensors, long changedActuators) {
+        appendSensorSnapshot(epochMillis, frame, actuators);
+    }
+
+    /** Forces written snapshots to stable storage (fsync); no-op by default. */
+    default void sync() {}
+
+    /**
+     * Closes any file handle kept open between appends; the next append reopens it and goes on
+     * in the same segment. Lets many repositories share a small number of descriptors.
+     * No-op by default.
+     */
+    default void release() {}
 }
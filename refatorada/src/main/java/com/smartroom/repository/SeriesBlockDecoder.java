@@ -0,0 +1,126 @@
+
+package main.java.com.smartroom.repository;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads back the blocks written by {@link SeriesBlockEncoder}, one record per {@link #next()}.
+ * Accessors refer to the record loaded by the last successful {@link #next()}.
+ * Reused between blocks via {@link #load}; decoding allocates only when a block is larger
+ * than every previous one.
+ */
+public final class SeriesBlockDecoder {
+
+    private final boolean[] presence;
+    private final int actuatorCount;
+    private final long[] bits;
+    private final int[] leading;
+    private final int[] trailing;
+    private final double[] values;
+
+    private long[] words = new long[64];
+    private int position;
+    private int size;
+    private int index;
+    private long firstMillis;
+    private long lastMillis;
+    private long timestampMillis;
+    private long delta;
+    private long actuatorMask;
+
+    public SeriesBlockDecoder(int[] columnTypes, int actuatorCount) {
+        this.presence = SeriesBlockEncoder.presenceColumns(columnTypes);
+        this.actuatorCount = actuatorCount;
+        this.bits = new long[columnTypes.length];
+        this.leading = new int[columnTypes.length];
+        this.trailing = new int[columnTypes.length];
+        this.values = new double[columnTypes.length];
+    }
+
+    /** Reads one block (header and payload) from the buffer's position and rewinds to its first record. */
+    public void load(ByteBuffer block) {
+        firstMillis = block.getLong();
+        lastMillis = block.getLong();
+        size = block.getInt();
+        int payload = block.getInt();
+        int needed = (payload + Long.BYTES - 1) / Long.BYTES + 1;
+        if (words.length < needed) words = new long[Math.max(needed, words.length * 2)];
+        Arrays.fill(words, 0, needed, 0L);
+        int fullWords = payload / Long.BYTES;
+        for (int i = 0; i < fullWords; i++) words[i] = block.getLong();
+        for (int b = fullWords * Long.BYTES; b < payload; b++) {
+            words[b >>> 3] |= (block.get() & 0xFFL) << (56 - 8 * (b & 7));
+        }
+        position = 0;
+        index = 0;
+        delta = 0;
+        actuatorMask = 0;
+        Arrays.fill(bits, 0L);
+    }
+
+    /** Decodes the next record of the block; false once all {@link #size()} records were read. */
+    public boolean next() {
+        if (index >= size) return false;
+        if (index == 0) {
+            timestampMillis = read(64);
+        } else {
+            delta += readDeltaOfDelta();
+            timestampMillis += delta;
+        }
+
+        for (int c = 0; c < values.length; c++) {
+            bits[c] = presence[c] ? readPresence(bits[c]) : readXor(c);
+            values[c] = Double.longBitsToDouble(bits[c]);
+        }
+
+        if (index == 0 || read(1) == 1) actuatorMask = read(actuatorCount);
+        index++;
+        return true;
+    }
+
+    private long readDeltaOfDelta() {
+        long z;
+        if (read(1) == 0) return 0;
+        else if (read(1) == 0) z = read(7);
+        else if (read(1) == 0) z = read(12);
+        else if (read(1) == 0) z = read(20);
+        else z = read(64);
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    private long readPresence(long previous) {
+        if (read(1) == 0) return previous;
+        if (read(1) == 0) return previous == SeriesBlockEncoder.ONE_BITS ? SeriesBlockEncoder.ZERO_BITS : SeriesBlockEncoder.ONE_BITS;
+        return read(64);
+    }
+
+    private long readXor(int c) {
+        if (read(1) == 0) return bits[c];
+        if (read(1) == 1) {
+            leading[c] = (int) read(6);
+            int meaningful = (int) read(6) + 1;
+            trailing[c] = 64 - leading[c] - meaningful;
+        }
+        return bits[c] ^ (read(64 - leading[c] - trailing[c]) << trailing[c]);
+    }
+
+    // Next n bits of the stream as an unsigned value (0 <= n <= 64)
+    private long read(int n) {
+        if (n == 0) return 0;
+        int word = position >>> 6;
+        int offset = position & 63;
+        int available = 64 - offset;
+        long value = (words[word] << offset) >>> (64 - n);
+        if (n > available) value |= words[word + 1] >>> (64 - (n - available));
+        position += n;
+        return value;
+    }
+
+    public int size() { return size; }
+    public long firstMillis() { return firstMillis; }
+    public long lastMillis() { return lastMillis; }
+    public long timestampMillis() { return timestampMillis; }
+    public long actuatorMask() { return actuatorMask; }
+    public double value(int column) { return values[column]; }
+}
@@ -0,0 +1,198 @@
+
+package main.java.com.smartroom.repository;
+
+import main.java.com.smartroom.sensors.SensorType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Gorilla-style compression of a block of sensor snapshots (see {@link SeriesBlockDecoder}).
+ * Each block is self-contained:
+ *   [firstMillis:long][lastMillis:long][recordCount:int][payloadBytes:int][payload]
+ * and the payload is a big-endian bit stream with, per record:
+ * <ul>
+ *   <li>timestamp: the first one raw (64 bits), then the zigzag delta-of-delta as
+ *       '0' (same interval), '10'+7, '110'+12, '1110'+20 or '1111'+64 bits;</li>
+ *   <li>one field per sensor column: presence columns store '0' (unchanged), '10' (flipped
+ *       between 0 and 1) or '11'+64 raw bits; other columns XOR the value with the previous one
+ *       and store '0' (equal), '10'+meaningful bits (fits the previous leading/trailing zero
+ *       window) or '11'+6 bits leading zeros+6 bits length+meaningful bits;</li>
+ *   <li>actuator mask: the first one raw, then '0' (unchanged) or '1'+mask
+ *       (actuatorCount bits).</li>
+ * </ul>
+ * Every column starts each block from 0.0, so its first value costs close to its full width.
+ * Reused between blocks via {@link #reset()}; appending allocates only when the block outgrows
+ * the largest one seen so far.
+ */
+public final class SeriesBlockEncoder {
+
+    static final int HEADER_BYTES = Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    static final long ZERO_BITS = Double.doubleToRawLongBits(0.0);
+    static final long ONE_BITS = Double.doubleToRawLongBits(1.0);
+
+    private final boolean[] presence;
+    private final int actuatorCount;
+    private final long[] previousBits;
+    private final int[] previousLeading;
+    private final int[] previousTrailing;
+
+    private long[] words = new long[64];
+    private int bitCount;
+    private int size;
+    private long firstMillis;
+    private long lastMillis;
+    private long lastDelta;
+    private long lastMask;
+
+    /** @param columnTypes SensorType ordinal of each column, -1 for keys that are not sensor types */
+    public SeriesBlockEncoder(int[] columnTypes, int actuatorCount) {
+        if (actuatorCount > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " actuators per record");
+        }
+        this.presence = presenceColumns(columnTypes);
+        this.actuatorCount = actuatorCount;
+        this.previousBits = new long[columnTypes.length];
+        this.previousLeading = new int[columnTypes.length];
+        this.previousTrailing = new int[columnTypes.length];
+        reset();
+    }
+
+    static boolean[] presenceColumns(int[] columnTypes) {
+        boolean[] p = new boolean[columnTypes.length];
+        for (int i = 0; i < p.length; i++) p[i] = columnTypes[i] == SensorType.PRESENCE.ordinal();
+        return p;
+    }
+
+    /** Appends one snapshot; {@code values} holds one value per column (NaN when missing). */
+    public void append(long millis, double[] values, long actuatorMask) {
+        if (size == 0) {
+            firstMillis = millis;
+            write(millis, 64);
+        } else {
+            long delta = millis - lastMillis;
+            writeDeltaOfDelta(delta - lastDelta);
+            lastDelta = delta;
+        }
+        lastMillis = millis;
+
+        for (int c = 0; c < presence.length; c++) {
+            long bits = Double.doubleToRawLongBits(values[c]);
+            if (presence[c]) writePresence(c, bits);
+            else writeXor(c, bits);
+            previousBits[c] = bits;
+        }
+
+        if (size == 0) {
+            write(actuatorMask, actuatorCount);
+        } else if (actuatorMask == lastMask) {
+            write(0, 1);
+        } else {
+            write(1, 1);
+            write(actuatorMask, actuatorCount);
+        }
+        lastMask = actuatorMask;
+        size++;
+    }
+
+    private void writeDeltaOfDelta(long dod) {
+        long z = (dod << 1) ^ (dod >> 63);
+        if (z == 0) {
+            write(0b0, 1);
+        } else if (z < (1L << 7)) {
+            write(0b10, 2);
+            write(z, 7);
+        } else if (z < (1L << 12)) {
+            write(0b110, 3);
+            write(z, 12);
+        } else if (z < (1L << 20)) {
+            write(0b1110, 4);
+            write(z, 20);
+        } else {
+            write(0b1111, 4);
+            write(z, 64);
+        }
+    }
+
+    private void writePresence(int c, long bits) {
+        long previous = previousBits[c];
+        if (bits == previous) {
+            write(0b0, 1);
+        } else if ((bits == ZERO_BITS && previous == ONE_BITS) || (bits == ONE_BITS && previous == ZERO_BITS)) {
+            write(0b10, 2);
+        } else {
+            write(0b11, 2);
+            write(bits, 64);
+        }
+    }
+
+    private void writeXor(int c, long bits) {
+        long xor = bits ^ previousBits[c];
+        if (xor == 0) {
+            write(0b0, 1);
+            return;
+        }
+        int leading = Long.numberOfLeadingZeros(xor);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading[c] >= 0 && leading >= previousLeading[c] && trailing >= previousTrailing[c]) {
+            write(0b10, 2);
+            write(xor >>> previousTrailing[c], 64 - previousLeading[c] - previousTrailing[c]);
+        } else {
+            int meaningful = 64 - leading - trailing;
+            write(0b11, 2);
+            write(leading, 6);
+            write(meaningful - 1, 6);
+            write(xor >>> trailing, meaningful);
+            previousLeading[c] = leading;
+            previousTrailing[c] = trailing;
+        }
+    }
+
+    // Appends the low n bits of value (0 <= n <= 64)
+    private void write(long value, int n) {
+        if (n == 0) return;
+        int index = bitCount >>> 6;
+        if (index + 1 >= words.length) words = Arrays.copyOf(words, words.length * 2);
+        if (n < 64) value &= (1L << n) - 1;
+        int free = 64 - (bitCount & 63);
+        if (n <= free) {
+            words[index] |= value << (free - n);
+        } else {
+            words[index] |= value >>> (n - free);
+            words[index + 1] |= value << (64 - (n - free));
+        }
+        bitCount += n;
+    }
+
+    public int size() { return size; }
+    public long firstMillis() { return firstMillis; }
+    public long lastMillis() { return lastMillis; }
+
+    /** Bytes {@link #writeTo} will produce (header included). */
+    public int encodedBytes() {
+        return HEADER_BYTES + (bitCount + 7) / 8;
+    }
+
+    /** Writes the block (header and payload) at the buffer's position. */
+    public void writeTo(ByteBuffer out) {
+        int payload = (bitCount + 7) / 8;
+        out.putLong(firstMillis).putLong(lastMillis).putInt(size).putInt(payload);
+        int fullWords = payload / Long.BYTES;
+        for (int i = 0; i < fullWords; i++) out.putLong(words[i]);
+        for (int b = fullWords * Long.BYTES; b < payload; b++) {
+            out.put((byte) (words[b >>> 3] >>> (56 - 8 * (b & 7))));
+        }
+    }
+
+    /** Starts a new, empty block. */
+    public void reset() {
+        Arrays.fill(words, 0, Math.min(words.length, (bitCount >>> 6) + 2), 0L);
+        bitCount = 0;
+        size = 0;
+        lastDelta = 0;
+        lastMask = 0;
+        Arrays.fill(previousBits, 0L);
+        Arrays.fill(previousLeading, -1);
+        Arrays.fill(previousTrailing, 0);
+    }
+}
@@ -0,0 +1,85 @@
+
+package main.java.com.smartroom.repository;
+
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.sensors.SensorType;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reusable batch of snapshots (possibly from many rooms) stored in flat primitive arrays,
+ * handed to {@link Repository#appendBatch(SnapshotBatch)} so a repository can persist
+ * all of them with one write.
+ */
+public final class SnapshotBatch {
+
+    private static final int TYPES = SensorType.count();
+
+    private final long[] millis;
+    private final double[] values;
+    private final long[] present;
+    private final long[] bits;
+    private final Object[] layouts;
+    private int size;
+
+    public SnapshotBatch(int capacity) {
+        this.millis = new long[capacity];
+        this.values = new double[capacity * TYPES];
+        this.present = new long[capacity];
+        this.bits = new long[capacity];
+        this.layouts = new Object[capacity];
+    }
+
+    public int size() { return size; }
+    public int capacity() { return millis.length; }
+    public boolean isFull() { return size == millis.length; }
+
+    public void clear() {
+        Arrays.fill(layouts, 0, size, null);
+        size = 0;
+    }
+
+    /** Copies the frame and actuator state; both can be reused by the caller afterwards. */
+    public void add(long epochMillis, SensorFrame frame, ActuatorState actuators) {
+        int i = size++;
+        millis[i] = epochMillis;
+        frame.copyTo(values, i * TYPES);
+        present[i] = frame.presentMask();
+        bits[i] = actuators.bits();
+        layouts[i] = actuators.names();
+    }
+
+    // raw copy used by AsyncRepository when draining its ring
+    void add(long epochMillis, double[] src, int offset, long presentMask, long actuatorBits, Object layout) {
+        int i = size++;
+        millis[i] = epochMillis;
+        System.arraycopy(src, offset, values, i * TYPES, TYPES);
+        present[i] = presentMask;
+        bits[i] = actuatorBits;
+        layouts[i] = layout;
+    }
+
+    // copy of entry i of another batch (AsyncRepository splitting a batch per target)
+    void add(SnapshotBatch src, int i) {
+        add(src.millis[i], src.values, i * TYPES, src.present[i], src.bits[i], src.layouts[i]);
+    }
+
+    public long millis(int i) { return millis[i]; }
+
+    /** Value of SensorType ordinal {@code type} in entry i (NaN when not read). */
+    public double value(int i, int type) { return values[i * TYPES + type]; }
+
+    public long presentMask(int i) { return present[i]; }
+
+    public long actuatorBits(int i) { return bits[i]; }
+
+    /** Interned actuator layout of entry i (see {@link ActuatorState#names()}). */
+    @SuppressWarnings("unchecked")
+    public List<String> actuatorLayout(int i) { return (List<String>) layouts[i]; }
+
+    public void loadFrame(int i, SensorFrame into) {
+        into.load(values, i * TYPES, present[i]);
+    }
+}
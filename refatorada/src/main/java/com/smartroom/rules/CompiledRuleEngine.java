@@ -0,0 +1,297 @@
+
+package main.java.com.smartroom.rules;
+
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.rules.RuleParser.*;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.sensors.SensorType;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rule engine compiled once from the DSL (see {@link RuleParser}).
+ * Sensor keys are resolved to array slots and actuator names to output slots at compile time;
+ * each actuator becomes a single MethodHandle tree (double[])boolean built from comparison leaves
+ * combined with guardWithTest, so {@link #evaluate(double[], boolean[])} does no map lookups
+ * and allocates nothing.
+ * A second tree per actuator reads a {@link SensorFrame} by SensorType ordinal for
+ * {@link #apply(SensorFrame, ActuatorState)}; keys that are not sensor types fold to constants there.
+ * Each of those trees also records which sensor types it reads, so
+ * {@link #applyChanged} only re-evaluates actuators whose inputs changed.
+ * The Map based {@link #apply} is kept for existing callers and converts at the boundary.
+ */
+public class CompiledRuleEngine implements RuleEngine {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType LEAF = MethodType.methodType(boolean.class, double[].class, int.class, double.class);
+    private static final MethodType LEAF_KEYS = MethodType.methodType(boolean.class, double[].class, int.class, int.class);
+    private static final MethodType FRAME_LEAF = MethodType.methodType(boolean.class, SensorFrame.class, int.class, double.class);
+    private static final MethodType FRAME_LEAF_KEYS = MethodType.methodType(boolean.class, SensorFrame.class, int.class, int.class);
+    private static final MethodHandle NOT;
+    private static final MethodHandle STALE;
+
+    static {
+        try {
+            NOT = LOOKUP.findStatic(CompiledRuleEngine.class, "not", MethodType.methodType(boolean.class, boolean.class));
+            STALE = LOOKUP.findStatic(CompiledRuleEngine.class, "stale", MethodType.methodType(boolean.class, SensorFrame.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String[] inputKeys;
+    private final String[] actuatorNames;
+    private final MethodHandle[] actuatorRules;
+    private final MethodHandle[] frameRules;
+    private final long[] frameInputs;
+    private volatile OutputBinding binding;
+
+    // Where each rule output lands in a given ActuatorState layout
+    private record OutputBinding(List<String> layout, int[] slots) {}
+
+    private CompiledRuleEngine(String[] inputKeys, String[] actuatorNames, MethodHandle[] actuatorRules,
+                               MethodHandle[] frameRules, long[] frameInputs) {
+        this.inputKeys = inputKeys;
+        this.actuatorNames = actuatorNames;
+        this.actuatorRules = actuatorRules;
+        this.frameRules = frameRules;
+        this.frameInputs = frameInputs;
+    }
+
+    public static CompiledRuleEngine load(Path rulesFile) throws IOException {
+        return compile(RuleParser.parse(rulesFile));
+    }
+
+    public static CompiledRuleEngine compile(String rulesText) {
+        return compile(RuleParser.parse(rulesText));
+    }
+
+    public static CompiledRuleEngine compile(List<Rule> rules) {
+        Map<String, Integer> inputs = new LinkedHashMap<>();
+        Map<String, MethodHandle> byActuator = new LinkedHashMap<>();
+        Map<String, MethodHandle> byActuatorFrame = new LinkedHashMap<>();
+        Map<String, Long> frameInputs = new LinkedHashMap<>();
+        for (Rule r : rules) {
+            byActuator.merge(r.actuator(), compile(r.when(), inputs), CompiledRuleEngine::or);
+            byActuatorFrame.merge(r.actuator(), compileFrame(r.when()), CompiledRuleEngine::or);
+            frameInputs.merge(r.actuator(), sensorMask(r.when()), (a, b) -> a | b);
+        }
+        return new CompiledRuleEngine(
+                inputs.keySet().toArray(new String[0]),
+                byActuator.keySet().toArray(new String[0]),
+                byActuator.values().toArray(new MethodHandle[0]),
+                byActuatorFrame.values().toArray(new MethodHandle[0]),
+                frameInputs.values().stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private static MethodHandle compile(Condition c, Map<String, Integer> inputs) {
+        return switch (c) {
+            case Compare cmp -> MethodHandles.insertArguments(leaf(cmp.op(), LEAF), 1,
+                    slot(inputs, cmp.key()), cmp.value());
+            case CompareKeys cmp -> MethodHandles.insertArguments(leaf(cmp.op(), LEAF_KEYS), 1,
+                    slot(inputs, cmp.left()), slot(inputs, cmp.right()));
+            case And and -> and(compile(and.left(), inputs), compile(and.right(), inputs));
+            case Or or -> or(compile(or.left(), inputs), compile(or.right(), inputs));
+            case Not not -> MethodHandles.filterReturnValue(compile(not.inner(), inputs), NOT);
+            case Const k -> constant(double[].class, k.value());
+            case Stale s -> MethodHandles.insertArguments(leaf(Op.GE, LEAF), 1,
+                    slot(inputs, SensorFrame.staleKey(s.key())), 0.5);
+        };
+    }
+
+    private static MethodHandle compileFrame(Condition c) {
+        return switch (c) {
+            case Compare cmp -> {
+                SensorType t = SensorType.fromKey(cmp.key());
+                yield t == null
+                        ? constant(SensorFrame.class, InterpretedRuleEngine.compare(Double.NaN, cmp.op(), cmp.value()))
+                        : MethodHandles.insertArguments(leaf(cmp.op(), FRAME_LEAF), 1, t.ordinal(), cmp.value());
+            }
+            case CompareKeys cmp -> {
+                SensorType l = SensorType.fromKey(cmp.left());
+                SensorType r = SensorType.fromKey(cmp.right());
+                yield l == null || r == null
+                        ? constant(SensorFrame.class, InterpretedRuleEngine.compare(Double.NaN, cmp.op(), Double.NaN))
+                        : MethodHandles.insertArguments(leaf(cmp.op(), FRAME_LEAF_KEYS), 1, l.ordinal(), r.ordinal());
+            }
+            case And and -> and(compileFrame(and.left()), compileFrame(and.right()));
+            case Or or -> or(compileFrame(or.left()), compileFrame(or.right()));
+            case Not not -> MethodHandles.filterReturnValue(compileFrame(not.inner()), NOT);
+            case Const k -> constant(SensorFrame.class, k.value());
+            case Stale s -> {
+                SensorType t = SensorType.fromKey(s.key());
+                yield t == null
+                        ? constant(SensorFrame.class, false)
+                        : MethodHandles.insertArguments(STALE, 1, t.ordinal());
+            }
+        };
+    }
+
+    // Sensor types (bit = ordinal) a condition reads from the frame
+    private static long sensorMask(Condition c) {
+        return switch (c) {
+            case Compare cmp -> bit(cmp.key());
+            case CompareKeys cmp -> bit(cmp.left()) | bit(cmp.right());
+            case And and -> sensorMask(and.left()) | sensorMask(and.right());
+            case Or or -> sensorMask(or.left()) | sensorMask(or.right());
+            case Not not -> sensorMask(not.inner());
+            case Const k -> 0L;
+            case Stale s -> bit(s.key());
+        };
+    }
+
+    private static long bit(String key) {
+        SensorType t = SensorType.fromKey(key);
+        return t == null ? 0L : 1L << t.ordinal();
+    }
+
+    private static MethodHandle and(MethodHandle a, MethodHandle b) {
+        return MethodHandles.guardWithTest(a, b, constant(a.type().parameterType(0), false));
+    }
+
+    private static MethodHandle or(MethodHandle a, MethodHandle b) {
+        return MethodHandles.guardWithTest(a, constant(a.type().parameterType(0), true), b);
+    }
+
+    private static MethodHandle constant(Class<?> input, boolean value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(boolean.class, value), 0, input);
+    }
+
+    private static int slot(Map<String, Integer> inputs, String key) {
+        return inputs.computeIfAbsent(key, k -> inputs.size());
+    }
+
+    private static MethodHandle leaf(Op op, MethodType type) {
+        try {
+            return LOOKUP.findStatic(CompiledRuleEngine.class, op.name().toLowerCase(), type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Sensor keys in input-slot order: inputs[i] must hold the value of inputKeys().get(i). */
+    public List<String> inputKeys() {
+        return List.of(inputKeys);
+    }
+
+    /** Actuators driven by the rules, in output-slot order. */
+    public List<String> actuatorNames() {
+        return List.of(actuatorNames);
+    }
+
+    public int inputSlot(String key) {
+        for (int i = 0; i < inputKeys.length; i++) if (inputKeys[i].equals(key)) return i;
+        return -1;
+    }
+
+    public int actuatorSlot(String name) {
+        for (int i = 0; i < actuatorNames.length; i++) if (actuatorNames[i].equals(name)) return i;
+        return -1;
+    }
+
+    /**
+     * Evaluates every actuator rule; inputs are indexed by {@link #inputKeys()} (NaN when missing),
+     * out by {@link #actuatorNames()}. Allocation free; safe to call concurrently with distinct arrays.
+     */
+    public void evaluate(double[] inputs, boolean[] out) {
+        try {
+            for (int i = 0; i < actuatorRules.length; i++) {
+                out[i] = (boolean) actuatorRules[i].invokeExact(inputs);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Evaluates the rules straight from the frame into {@code actuators}; actuators without rules
+     * keep their state. Allocation free once the layout of {@code actuators} has been seen.
+     */
+    @Override
+    public void apply(SensorFrame frame, ActuatorState actuators) {
+        applyChanged(frame, actuators, -1L, true);
+    }
+
+    /** As {@link #apply(SensorFrame, ActuatorState)}, skipping actuators whose rules read none of {@code changedSensors}. */
+    @Override
+    public void applyChanged(SensorFrame frame, ActuatorState actuators, long changedSensors) {
+        applyChanged(frame, actuators, changedSensors, false);
+    }
+
+    private void applyChanged(SensorFrame frame, ActuatorState actuators, long changedSensors, boolean all) {
+        OutputBinding b = binding;
+        if (b == null || b.layout() != actuators.names()) {
+            b = new OutputBinding(actuators.names(), ActuatorState.slotsFor(actuators.names(), List.of(actuatorNames)));
+            binding = b;
+        }
+        int[] slots = b.slots();
+        try {
+            for (int i = 0; i < frameRules.length; i++) {
+                if (slots[i] < 0 || (!all && (frameInputs[i] & changedSensors) == 0)) continue;
+                actuators.set(slots[i], (boolean) frameRules[i].invokeExact(frame));
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    @Override
+    public Map<String, Boolean> apply(Map<String, Double> sensorValues, Map<String, Boolean> currentActuators) {
+        double[] in = new double[inputKeys.length];
+        for (int i = 0; i < in.length; i++) {
+            Double v = sensorValues.get(inputKeys[i]);
+            in[i] = v == null ? Double.NaN : v;
+        }
+        boolean[] out = new boolean[actuatorNames.length];
+        evaluate(in, out);
+        Map<String, Boolean> result = new HashMap<>(currentActuators);
+        for (int i = 0; i < out.length; i++) result.put(actuatorNames[i], out[i]);
+        return result;
+    }
+
+    // Comparison leaves, bound to (slot, constant) by compile() / compileFrame()
+
+    private static boolean lt(double[] in, int i, double c) { return in[i] < c; }
+    private static boolean le(double[] in, int i, double c) { return in[i] <= c; }
+    private static boolean gt(double[] in, int i, double c) { return in[i] > c; }
+    private static boolean ge(double[] in, int i, double c) { return in[i] >= c; }
+    private static boolean eq(double[] in, int i, double c) { return in[i] == c; }
+    private static boolean ne(double[] in, int i, double c) { return in[i] != c; }
+
+    private static boolean lt(double[] in, int i, int j) { return in[i] < in[j]; }
+    private static boolean le(double[] in, int i, int j) { return in[i] <= in[j]; }
+    private static boolean gt(double[] in, int i, int j) { return in[i] > in[j]; }
+    private static boolean ge(double[] in, int i, int j) { return in[i] >= in[j]; }
+    private static boolean eq(double[] in, int i, int j) { return in[i] == in[j]; }
+    private static boolean ne(double[] in, int i, int j) { return in[i] != in[j]; }
+
+    private static boolean stale(SensorFrame f, int i) { return f.isStale(i); }
+
+    private static boolean lt(SensorFrame f, int i, double c) { return f.get(i) < c; }
+    private static boolean le(SensorFrame f, int i, double c) { return f.get(i) <= c; }
+    private static boolean gt(SensorFrame f, int i, double c) { return f.get(i) > c; }
+    private static boolean ge(SensorFrame f, int i, double c) { return f.get(i) >= c; }
+    private static boolean eq(SensorFrame f, int i, double c) { return f.get(i) == c; }
+    private static boolean ne(SensorFrame f, int i, double c) { return f.get(i) != c; }
+
+    private static boolean lt(SensorFrame f, int i, int j) { return f.get(i) < f.get(j); }
+    private static boolean le(SensorFrame f, int i, int j) { return f.get(i) <= f.get(j); }
+    private static boolean gt(SensorFrame f, int i, int j) { return f.get(i) > f.get(j); }
+    private static boolean ge(SensorFrame f, int i, int j) { return f.get(i) >= f.get(j); }
+    private static boolean eq(SensorFrame f, int i, int j) { return f.get(i) == f.get(j); }
+    private static boolean ne(SensorFrame f, int i, int j) { return f.get(i) != f.get(j); }
+
+    private static boolean not(boolean b) { return !b; }
+}
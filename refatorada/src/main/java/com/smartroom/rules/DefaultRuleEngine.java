@@ -1,6 +1,10 @@
 
 package main.java.com.smartroom.rules;
 
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.sensors.SensorType;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,4 +33,27 @@ public class DefaultRuleEngine implements RuleEngine {
 
         return out;
     }
+
+    @Override
+    public void apply(SensorFrame frame, ActuatorState actuators) {
+        double temp = frame.get(SensorType.TEMPERATURE, 25.0);
+        boolean presence = frame.get(SensorType.PRESENCE, 0.0) >= 0.5;
+        double lux = frame.get(SensorType.LIGHT, 600.0);
+
+        actuators.set("Luz", presence && lux < 300.0);
+        actuators.set("Ventilador", temp > 28.0);
+    }
+
+    private static final long LIGHT_INPUTS = (1L << SensorType.PRESENCE.ordinal()) | (1L << SensorType.LIGHT.ordinal());
+    private static final long FAN_INPUTS = 1L << SensorType.TEMPERATURE.ordinal();
+
+    @Override
+    public void applyChanged(SensorFrame frame, ActuatorState actuators, long changedSensors) {
+        if ((changedSensors & LIGHT_INPUTS) != 0) {
+            actuators.set("Luz", frame.get(SensorType.PRESENCE, 0.0) >= 0.5 && frame.get(SensorType.LIGHT, 600.0) < 300.0);
+        }
+        if ((changedSensors & FAN_INPUTS) != 0) {
+            actuators.set("Ventilador", frame.get(SensorType.TEMPERATURE, 25.0) > 28.0);
+        }
+    }
 }
@@ -0,0 +1,63 @@
+
+package main.java.com.smartroom.rules;
+
+import main.java.com.smartroom.rules.RuleParser.*;
+import main.java.com.smartroom.sensors.SensorFrame;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates parsed DSL rules by walking the syntax tree and looking sensor values up by key
+ * on every cycle. Kept as the straightforward reference (and benchmark baseline)
+ * for {@link CompiledRuleEngine}. Missing sensor values compare as NaN (always false except !=).
+ */
+public class InterpretedRuleEngine implements RuleEngine {
+
+    private final List<Rule> rules;
+
+    public InterpretedRuleEngine(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+    }
+
+    @Override
+    public Map<String, Boolean> apply(Map<String, Double> sensorValues, Map<String, Boolean> currentActuators) {
+        Map<String, Boolean> out = new HashMap<>(currentActuators);
+        Map<String, Boolean> fired = new HashMap<>();
+        for (Rule r : rules) {
+            boolean on = eval(r.when(), sensorValues);
+            fired.merge(r.actuator(), on, Boolean::logicalOr);
+        }
+        out.putAll(fired);
+        return out;
+    }
+
+    static boolean eval(Condition c, Map<String, Double> values) {
+        return switch (c) {
+            case Compare cmp -> compare(value(values, cmp.key()), cmp.op(), cmp.value());
+            case CompareKeys cmp -> compare(value(values, cmp.left()), cmp.op(), value(values, cmp.right()));
+            case And and -> eval(and.left(), values) && eval(and.right(), values);
+            case Or or -> eval(or.left(), values) || eval(or.right(), values);
+            case Not not -> !eval(not.inner(), values);
+            case Const k -> k.value();
+            case Stale s -> value(values, SensorFrame.staleKey(s.key())) >= 0.5;
+        };
+    }
+
+    private static double value(Map<String, Double> values, String key) {
+        Double v = values.get(key);
+        return v == null ? Double.NaN : v;
+    }
+
+    static boolean compare(double a, Op op, double b) {
+        return switch (op) {
+            case LT -> a < b;
+            case LE -> a <= b;
+            case GT -> a > b;
+            case GE -> a >= b;
+            case EQ -> a == b;
+            case NE -> a != b;
+        };
+    }
+}
@@ -1,6 +1,9 @@
 
 package main.java.com.smartroom.rules;
 
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+
 import java.util.Map;
 
 public interface RuleEngine {
@@ -9,4 +12,22 @@ public interface RuleEngine {
      * Returns a map of actuatorName -> on/off state after rules.
      */
     Map<String, Boolean> apply(Map<String, Double> sensorValues, Map<String, Boolean> currentActuators);
+
+    /**
+     * Primitive variant: reads the frame and updates {@code actuators} in place
+     * (it holds the current states on entry). Engines on the control-cycle hot path override this
+     * to run without allocation; the default bridges to the Map based method.
+     */
+    default void apply(SensorFrame frame, ActuatorState actuators) {
+        actuators.apply(apply(frame.toMap(), actuators.toMap()));
+    }
+
+    /**
+     * Change-driven variant: only rules reading a sensor type set in {@code changedSensors}
+     * (bit = SensorType ordinal) have to be re-evaluated, the others leave their actuator as
+     * {@code actuators} holds it. The default re-evaluates everything when anything changed.
+     */
+    default void applyChanged(SensorFrame frame, ActuatorState actuators, long changedSensors) {
+        if (changedSensors != 0) apply(frame, actuators);
+    }
 }
@@ -0,0 +1,165 @@
+
+package main.java.com.smartroom.rules;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the rule DSL. One rule per line, '#' starts a comment:
+ * <pre>
+ * Luz        = pres &gt;= 0.5 and lux &lt; 300
+ * Ventilador = temp &gt; 28
+ * Alarme     = not (temp &lt; 35) or lux == 0
+ * Aviso      = stale(temp)
+ * </pre>
+ * The left side names an actuator; the right side combines comparisons between a sensor key and
+ * a number (or another sensor key) with and/or/not (&amp;&amp;, ||, ! also accepted) and parentheses.
+ * {@code stale(key)} is true when the sensor missed its read deadline and the value is the last known one.
+ * Several rules for the same actuator are OR-ed: it is on when any of them matches.
+ */
+public final class RuleParser {
+
+    public enum Op { LT, LE, GT, GE, EQ, NE }
+
+    public sealed interface Condition permits Compare, CompareKeys, And, Or, Not, Const, Stale {}
+    public record Compare(String key, Op op, double value) implements Condition {}
+    public record CompareKeys(String left, Op op, String right) implements Condition {}
+    public record And(Condition left, Condition right) implements Condition {}
+    public record Or(Condition left, Condition right) implements Condition {}
+    public record Not(Condition inner) implements Condition {}
+    public record Const(boolean value) implements Condition {}
+    public record Stale(String key) implements Condition {}
+
+    public record Rule(String actuator, Condition when, int line) {}
+
+    private final String src;
+    private final int line;
+    private int pos;
+
+    private RuleParser(String src, int line) {
+        this.src = src;
+        this.line = line;
+    }
+
+    public static List<Rule> parse(Path file) throws IOException {
+        return parse(Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    public static List<Rule> parse(String text) {
+        List<Rule> rules = new ArrayList<>();
+        String[] lines = text.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String l = lines[i];
+            int hash = l.indexOf('#');
+            if (hash >= 0) l = l.substring(0, hash);
+            if (l.isBlank()) continue;
+            rules.add(new RuleParser(l, i + 1).rule());
+        }
+        return rules;
+    }
+
+    private Rule rule() {
+        String actuator = ident();
+        expect("=");
+        Condition c = or();
+        skipSpaces();
+        if (pos < src.length()) throw error("unexpected '" + src.substring(pos) + "'");
+        return new Rule(actuator, c, line);
+    }
+
+    private Condition or() {
+        Condition c = and();
+        while (accept("or") || accept("||")) c = new Or(c, and());
+        return c;
+    }
+
+    private Condition and() {
+        Condition c = unary();
+        while (accept("and") || accept("&&")) c = new And(c, unary());
+        return c;
+    }
+
+    private Condition unary() {
+        if (accept("not") || accept("!")) return new Not(unary());
+        if (accept("(")) {
+            Condition c = or();
+            expect(")");
+            return c;
+        }
+        if (accept("true")) return new Const(true);
+        if (accept("false")) return new Const(false);
+        String key = ident();
+        if (key.equals("stale") && accept("(")) {
+            Condition c = new Stale(ident());
+            expect(")");
+            return c;
+        }
+        Op op = op();
+        skipSpaces();
+        if (pos < src.length() && isIdentStart(src.charAt(pos))) return new CompareKeys(key, op, ident());
+        return new Compare(key, op, number());
+    }
+
+    private Op op() {
+        if (accept("<=")) return Op.LE;
+        if (accept(">=")) return Op.GE;
+        if (accept("==")) return Op.EQ;
+        if (accept("!=")) return Op.NE;
+        if (accept("<")) return Op.LT;
+        if (accept(">")) return Op.GT;
+        throw error("expected comparison operator");
+    }
+
+    private String ident() {
+        skipSpaces();
+        int start = pos;
+        if (pos >= src.length() || !isIdentStart(src.charAt(pos))) throw error("expected name");
+        while (pos < src.length() && (Character.isLetterOrDigit(src.charAt(pos)) || src.charAt(pos) == '_')) pos++;
+        return src.substring(start, pos);
+    }
+
+    private double number() {
+        skipSpaces();
+        int start = pos;
+        if (pos < src.length() && (src.charAt(pos) == '-' || src.charAt(pos) == '+')) pos++;
+        while (pos < src.length() && (Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '.')) pos++;
+        try {
+            return Double.parseDouble(src.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("expected number");
+        }
+    }
+
+    private boolean accept(String token) {
+        skipSpaces();
+        if (!src.startsWith(token, pos)) return false;
+        int end = pos + token.length();
+        // keywords must not be the prefix of a longer name (e.g. "order")
+        if (Character.isLetter(token.charAt(0)) && end < src.length()
+                && (Character.isLetterOrDigit(src.charAt(end)) || src.charAt(end) == '_')) {
+            return false;
+        }
+        pos = end;
+        return true;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) throw error("expected '" + token + "'");
+    }
+
+    private void skipSpaces() {
+        while (pos < src.length() && Character.isWhitespace(src.charAt(pos))) pos++;
+    }
+
+    private static boolean isIdentStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException("Regra inválida (linha " + line + ", coluna " + (pos + 1) + "): " + msg);
+    }
+}
@@ -0,0 +1,178 @@
+
+package main.java.com.smartroom.runtime;
+
+import main.java.com.smartroom.SmartRoomController;
+import main.java.com.smartroom.stats.RoomStats;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts many SmartRoomController instances in a single JVM.
+ * A small scheduler only keeps the timers; each due cycle runs on a worker
+ * (virtual thread per cycle or a bounded carrier pool), so a room never blocks
+ * a thread while it waits for its next interval.
+ * Each room is rescheduled after its cycle finishes (fixed delay + jitter),
+ * so cycles of the same room never overlap.
+ */
+public class RoomRuntime implements AutoCloseable {
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final LongAdder cycles = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final long startedNanos = System.nanoTime();
+    private long lastSampleNanos = startedNanos;
+    private long lastSampleCycles = 0;
+    private volatile boolean closed = false;
+
+    private RoomRuntime(ExecutorService workers) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "room-runtime-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.workers = workers;
+    }
+
+    /** One virtual thread per room cycle. */
+    public static RoomRuntime withVirtualThreads() {
+        return new RoomRuntime(Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("room-cycle-", 0).factory()));
+    }
+
+    /** A fixed pool of platform threads shared by every room. */
+    public static RoomRuntime withPool(int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be > 0");
+        return new RoomRuntime(Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "room-cycle");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * Registers a room. The first cycle starts at a random point inside the interval
+     * so rooms added together do not all fire on the same tick.
+     */
+    public void addRoom(String roomId, SmartRoomController controller, Duration interval, Duration jitter) {
+        if (closed) throw new IllegalStateException("Runtime is closed");
+        if (interval.isZero() || interval.isNegative()) throw new IllegalArgumentException("interval must be > 0");
+        Room room = new Room(roomId, controller, interval.toNanos(), Math.max(0, jitter.toNanos()));
+        if (rooms.putIfAbsent(roomId, room) != null) {
+            throw new IllegalArgumentException("Room already registered: " + roomId);
+        }
+        room.schedule(ThreadLocalRandom.current().nextLong(room.intervalNanos));
+    }
+
+    public boolean removeRoom(String roomId) {
+        Room room = rooms.remove(roomId);
+        if (room == null) return false;
+        room.cancel();
+        return true;
+    }
+
+    public int roomCount() {
+        return rooms.size();
+    }
+
+    public long totalCycles() {
+        return cycles.sum();
+    }
+
+    public long totalFailures() {
+        return failures.sum();
+    }
+
+    /** Average cycles/sec since the runtime was created. */
+    public double averageCyclesPerSecond() {
+        double secs = (System.nanoTime() - startedNanos) / 1e9;
+        return secs <= 0 ? 0 : cycles.sum() / secs;
+    }
+
+    /** Cycles/sec since the previous call to this method. */
+    public synchronized double sampleCyclesPerSecond() {
+        long now = System.nanoTime();
+        long total = cycles.sum();
+        double secs = (now - lastSampleNanos) / 1e9;
+        double rate = secs <= 0 ? 0 : (total - lastSampleCycles) / secs;
+        lastSampleNanos = now;
+        lastSampleCycles = total;
+        return rate;
+    }
+
+    /** Aggregates of every room merged into one RoomStats. */
+    public RoomStats aggregateStats() {
+        RoomStats total = new RoomStats();
+        for (Room room : rooms.values()) total.merge(room.controller.stats());
+        return total;
+    }
+
+    public String stats() {
+        return String.format("Salas: %d | Ciclos: %d | Falhas: %d | Ciclos/s: %.1f",
+                roomCount(), totalCycles(), totalFailures(), sampleCyclesPerSecond());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        rooms.values().forEach(Room::cancel);
+        rooms.clear();
+        scheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) workers.shutdownNow();
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Room implements Runnable {
+        private final String id;
+        private final SmartRoomController controller;
+        private final long intervalNanos;
+        private final long jitterNanos;
+        private volatile ScheduledFuture<?> next;
+        private volatile boolean cancelled = false;
+
+        Room(String id, SmartRoomController controller, long intervalNanos, long jitterNanos) {
+            this.id = id;
+            this.controller = controller;
+            this.intervalNanos = intervalNanos;
+            this.jitterNanos = jitterNanos;
+        }
+
+        void schedule(long delayNanos) {
+            if (cancelled || closed) return;
+            try {
+                next = scheduler.schedule(() -> workers.execute(this), delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // runtime is shutting down
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            try {
+                controller.runOnce();
+                cycles.increment();
+            } catch (RuntimeException e) {
+                failures.increment();
+                System.err.println("Falha no ciclo da sala " + id + ": " + e.getMessage());
+            }
+            long jitter = jitterNanos == 0 ? 0 : ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+            schedule(intervalNanos + jitter);
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = next;
+            if (f != null) f.cancel(false);
+        }
+    }
+}
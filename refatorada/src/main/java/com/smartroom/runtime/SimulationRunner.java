@@ -0,0 +1,233 @@
+
+package main.java.com.smartroom.runtime;
+
+import main.java.com.smartroom.SmartRoomController;
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.metrics.Metrics;
+import main.java.com.smartroom.repository.BinarySeriesRepository;
+import main.java.com.smartroom.repository.CompressedSeriesRepository;
+import main.java.com.smartroom.repository.MappedRingRepository;
+import main.java.com.smartroom.repository.Repository;
+import main.java.com.smartroom.rules.DefaultRuleEngine;
+import main.java.com.smartroom.rules.RuleEngine;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.time.VirtualClock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Fast-forward capacity test: runs default rooms over a span of virtual time as fast as the
+ * CPU allows, with no sleeping between cycles.
+ * Rooms are split across worker threads. Each worker owns a {@link VirtualClock}: it runs every
+ * one of its rooms once, then advances the clock by one step, so cycle n of every room is
+ * stamped start + n * step, as it would be live.
+ * Each room writes to its own repository under the output directory. The summary gives cycle
+ * throughput, how much faster than real time the simulation ran, and the bytes written per
+ * room-day, for sizing CPUs and disks before deploying.
+ *
+ * Usage: SimulationRunner [--rooms=100] [--days=1] [--stepMs=1000] [--threads=cores]
+ *                         [--repository=binary|compressed|ring|none] [--seed=1] [--dir=path] [--keep]
+ * Without --dir the data goes to a temporary directory that is deleted at the end, unless --keep.
+ * The console output and any sensor deadline of the rooms are switched off. Room i gets sensors
+ * seeded with seed + i, so the same options replay the same readings on every run.
+ */
+public final class SimulationRunner {
+
+    public record Config(int rooms, Duration span, Duration step, int threads, String repository, long seed, Path dir) {
+        public Config {
+            if (rooms <= 0) throw new IllegalArgumentException("rooms must be > 0");
+            if (step.toMillis() <= 0) throw new IllegalArgumentException("step must be >= 1 ms");
+            if (threads <= 0) throw new IllegalArgumentException("threads must be > 0");
+        }
+
+        public long cyclesPerRoom() {
+            return span.toMillis() / step.toMillis();
+        }
+    }
+
+    public record Result(Config config, long cycles, long persisted, long wallNanos, long bytesWritten) {
+
+        public double cyclesPerSecond() {
+            return cycles / (wallNanos / 1e9);
+        }
+
+        /** Virtual seconds simulated per wall-clock second (summed over rooms: room-seconds). */
+        public double speedup() {
+            return cycles * (config.step().toMillis() / 1000.0) / (wallNanos / 1e9);
+        }
+
+        public double bytesPerRoomDay() {
+            double roomDays = cycles * (double) config.step().toMillis() / 86_400_000.0;
+            return roomDays <= 0 ? 0 : bytesWritten / roomDays;
+        }
+
+        public String render() {
+            double days = config.span().toMillis() / 86_400_000.0;
+            double bytesPerDay = bytesPerRoomDay();
+            double wallSecs = wallNanos / 1e9;
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== SIMULAÇÃO ACELERADA ===\n");
+            sb.append(String.format(Locale.ROOT, "- Salas: %d | período: %.2f dias | passo: %d ms | threads: %d | repositório: %s%n",
+                    config.rooms(), days, config.step().toMillis(), config.threads(), config.repository()));
+            sb.append(String.format(Locale.ROOT, "- Ciclos: %,d em %.1f s (%,.0f ciclos/s, %,.0f ns/ciclo por thread)%n",
+                    cycles, wallSecs, cyclesPerSecond(), wallNanos * (double) config.threads() / Math.max(1, cycles)));
+            sb.append(String.format(Locale.ROOT, "- Tempo simulado: %,.0fx o tempo real (somando as salas)%n", speedup()));
+            sb.append(String.format(Locale.ROOT, "- Persistência: %,d snapshots, %s gravados (%s por sala/dia)%n",
+                    persisted, bytes(bytesWritten), bytes((long) bytesPerDay)));
+            sb.append(String.format(Locale.ROOT, "- Projeção para 1 ano e %d salas: %s em disco e %.3g núcleos de CPU em tempo real%n",
+                    config.rooms(), bytes((long) (bytesPerDay * 365 * config.rooms())),
+                    config.rooms() / (config.step().toMillis() / 1000.0) * (wallNanos * (double) config.threads() / Math.max(1, cycles)) / 1e9));
+            return sb.toString();
+        }
+    }
+
+    public static Result run(Config config) throws Exception {
+        Path dir = config.dir();
+        Files.createDirectories(dir);
+        long start = System.currentTimeMillis() / 1000 * 1000;
+        long cyclesPerRoom = config.cyclesPerRoom();
+        RuleEngine rules = new DefaultRuleEngine();
+
+        List<List<SmartRoomController>> groups = new ArrayList<>();
+        List<Repository> repositories = new ArrayList<>();
+        List<VirtualClock> clocks = new ArrayList<>();
+        for (int t = 0; t < config.threads(); t++) {
+            groups.add(new ArrayList<>());
+            clocks.add(new VirtualClock(start));
+        }
+        for (int i = 0; i < config.rooms(); i++) {
+            int worker = i % config.threads();
+            Repository repo = repository(config.repository(), dir.resolve("room-" + i));
+            repositories.add(repo);
+            SmartRoomController room = SmartRoomController.createRoom(rules, repo, clocks.get(worker), config.seed() + i);
+            room.setConsoleOutput(false);
+            room.setReadDeadline(null);
+            groups.get(worker).add(room);
+        }
+
+        AtomicLong cycles = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(config.threads());
+        long t0 = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int t = 0; t < config.threads(); t++) {
+                List<SmartRoomController> rooms = groups.get(t);
+                VirtualClock clock = clocks.get(t);
+                long stepMillis = config.step().toMillis();
+                running.add(workers.submit(() -> {
+                    for (long n = 0; n < cyclesPerRoom; n++) {
+                        for (SmartRoomController room : rooms) room.runOnce();
+                        clock.advance(stepMillis);
+                    }
+                    cycles.addAndGet(cyclesPerRoom * rooms.size());
+                }));
+            }
+            for (Future<?> f : running) f.get();
+        } finally {
+            workers.shutdown();
+        }
+        long wall = System.nanoTime() - t0;
+
+        for (Repository repo : repositories) {
+            if (repo instanceof Closeable c) c.close();
+        }
+        long persisted = 0;
+        for (List<SmartRoomController> rooms : groups) {
+            for (SmartRoomController room : rooms) persisted += room.persistedSnapshots();
+        }
+        return new Result(config, cycles.get(), persisted, wall, directorySize(dir));
+    }
+
+    private static Repository repository(String kind, Path roomDir) {
+        return switch (kind) {
+            case "binary" -> new BinarySeriesRepository(roomDir);
+            case "compressed" -> new CompressedSeriesRepository(roomDir);
+            case "ring" -> new MappedRingRepository(roomDir.resolve("room.ring"), 4096);
+            case "none" -> new DiscardingRepository();
+            default -> throw new IllegalArgumentException("Unknown repository: " + kind);
+        };
+    }
+
+    // CPU-only runs: snapshots are dropped
+    private static final class DiscardingRepository implements Repository {
+        @Override public void appendSensorSnapshot(LocalDateTime ts, Map<String, Double> values, Map<String, Boolean> actuators) {}
+        @Override public void appendSensorSnapshot(long epochMillis, SensorFrame frame, ActuatorState actuators) {}
+        @Override public void writeReport(String report) {}
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+    // Deepest paths first; the first file that cannot be deleted stops the cleanup with its IOException
+    private static void deleteRecursively(Path dir) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.walk(dir)) {
+            paths = files.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path p : paths) Files.delete(p);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dirOption = option(args, "dir", null);
+        Path dir = dirOption != null ? Path.of(dirOption) : Files.createTempDirectory("smartroom-sim");
+        Config config = new Config(
+                Integer.parseInt(option(args, "rooms", "100")),
+                Duration.ofMillis((long) (Double.parseDouble(option(args, "days", "1")) * 86_400_000L)),
+                Duration.ofMillis(Long.parseLong(option(args, "stepMs", "1000"))),
+                Integer.parseInt(option(args, "threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                option(args, "repository", "binary"),
+                Long.parseLong(option(args, "seed", "1")),
+                dir);
+        if (Metrics.ENABLED && config.threads() > 1) {
+            System.out.println("Dica: -Dsmartroom.metrics=false evita que as threads disputem os histogramas compartilhados.");
+        }
+        try {
+            System.out.print(run(config).render());
+        } finally {
+            if (dirOption == null && !List.of(args).contains("--keep")) {
+                try {
+                    deleteRecursively(dir);
+                } catch (IOException e) {
+                    System.err.println("Erro ao remover os dados da simulação em " + dir + ": " + e);
+                }
+            } else {
+                System.out.println("Dados em " + dir);
+            }
+        }
+    }
+
+    private static String option(String[] args, String name, String fallback) {
+        String prefix = "--" + name + "=";
+        for (String a : args) if (a.startsWith(prefix)) return a.substring(prefix.length());
+        return fallback;
+    }
+
+    private static String bytes(long n) {
+        String[] units = {"B", "KiB", "MiB", "GiB", "TiB", "PiB"};
+        double v = n;
+        int u = 0;
+        while (v >= 1024 && u < units.length - 1) {
+            v /= 1024;
+            u++;
+        }
+        return String.format(Locale.ROOT, "%.1f %s", v, units[u]);
+    }
+}
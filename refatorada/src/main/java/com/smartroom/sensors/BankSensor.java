@@ -0,0 +1,42 @@
+
+package main.java.com.smartroom.sensors;
+
+/**
+ * A whole {@link SensorBank} seen by the controller as one sensor: every read fills a reused
+ * buffer with one bulk {@link SensorBank#readInto} and reduces it to the room value (mean
+ * temperature and lux, presence when any sensor detects someone).
+ */
+public final class BankSensor implements Sensor {
+
+    private final String id;
+    private final String name;
+    private final SensorBank bank;
+    private final double[] buffer;
+
+    public BankSensor(String id, String name, SensorBank bank) {
+        if (bank.size() == 0) throw new IllegalArgumentException("Empty sensor bank");
+        this.id = id;
+        this.name = name;
+        this.bank = bank;
+        this.buffer = new double[bank.size()];
+    }
+
+    @Override public String getId() { return id; }
+    @Override public String getName() { return name; }
+    @Override public SensorType getType() { return bank.type(); }
+    @Override public double deadband() { return bank.deadband(); }
+
+    public SensorBank bank() { return bank; }
+
+    @Override
+    public double readValue() {
+        bank.readInto(buffer);
+        if (bank.type() == SensorType.PRESENCE) {
+            for (double v : buffer) if (v != 0.0) return 1.0;
+            return 0.0;
+        }
+        double sum = 0;
+        for (double v : buffer) sum += v;
+        return sum / buffer.length;
+    }
+}
@@ -1,16 +1,26 @@
 
 package main.java.com.smartroom.sensors;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class FakePresenceSensor implements Sensor {
     private final String id;
     private final String name;
-    private final Random rnd = new Random();
+    private final SplittableRandom rnd;
 
     public FakePresenceSensor(String id, String name) {
+        this(id, name, new SplittableRandom());
+    }
+
+    /** Same readings on every run for the same seed. */
+    public FakePresenceSensor(String id, String name, long seed) {
+        this(id, name, new SplittableRandom(seed));
+    }
+
+    private FakePresenceSensor(String id, String name, SplittableRandom rnd) {
         this.id = id;
         this.name = name;
+        this.rnd = rnd;
     }
 
     @Override public String getId() { return id; }
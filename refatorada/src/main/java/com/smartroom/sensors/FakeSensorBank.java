@@ -0,0 +1,86 @@
+
+package main.java.com.smartroom.sensors;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Simulated sensors of one type held as a struct of arrays: sensor i is slot i of the
+ * {@code min}/{@code span} arrays, and the whole bank shares one seeded SplittableRandom.
+ * Readings follow the same distributions as the single Fake sensors:
+ * <ul>
+ *   <li>TEMPERATURE: uniform in [min, min + span) °C (22.0 to 31.0 by default);</li>
+ *   <li>PRESENCE: 1.0 with probability span, else 0.0 (40% by default);</li>
+ *   <li>LIGHT: integral lux in [min, min + span] (100 to 900 by default).</li>
+ * </ul>
+ * Ids are {@code prefix + index}, built on demand, so a bank of a million sensors is three
+ * arrays and a generator. The same seed gives the same readings on every run.
+ */
+public final class FakeSensorBank implements SensorBank {
+
+    private final SensorType type;
+    private final String idPrefix;
+    private final double[] min;
+    private final double[] span;
+    private final SplittableRandom rnd;
+
+    private FakeSensorBank(SensorType type, String idPrefix, int count, double min, double span, long seed) {
+        if (count < 0) throw new IllegalArgumentException("count must be >= 0");
+        this.type = type;
+        this.idPrefix = idPrefix;
+        this.min = new double[count];
+        this.span = new double[count];
+        Arrays.fill(this.min, min);
+        Arrays.fill(this.span, span);
+        this.rnd = new SplittableRandom(seed);
+    }
+
+    public static FakeSensorBank temperature(String idPrefix, int count, long seed) {
+        return new FakeSensorBank(SensorType.TEMPERATURE, idPrefix, count, 22.0, 9.0, seed);
+    }
+
+    public static FakeSensorBank presence(String idPrefix, int count, long seed) {
+        return new FakeSensorBank(SensorType.PRESENCE, idPrefix, count, 0.0, 0.4, seed);
+    }
+
+    public static FakeSensorBank light(String idPrefix, int count, long seed) {
+        return new FakeSensorBank(SensorType.LIGHT, idPrefix, count, 100, 800, seed);
+    }
+
+    /** Overrides the range of one sensor (for presence, {@code span} is the probability). */
+    public void setRange(int index, double min, double span) {
+        this.min[index] = min;
+        this.span[index] = span;
+    }
+
+    @Override public SensorType type() { return type; }
+    @Override public int size() { return min.length; }
+    @Override public String id(int index) { return idPrefix + index; }
+
+    @Override
+    public double deadband() {
+        return switch (type) {
+            case TEMPERATURE -> 0.5;
+            case LIGHT -> 25.0;
+            case PRESENCE -> 0.0;
+        };
+    }
+
+    // One tight loop per type, no per-sensor dispatch
+    @Override
+    public void readInto(double[] dst) {
+        int n = min.length;
+        if (dst.length < n) throw new IllegalArgumentException("dst holds " + dst.length + " of " + n + " readings");
+        switch (type) {
+            case TEMPERATURE -> {
+                for (int i = 0; i < n; i++) dst[i] = min[i] + rnd.nextDouble() * span[i];
+            }
+            case PRESENCE -> {
+                for (int i = 0; i < n; i++) dst[i] = rnd.nextDouble() < span[i] ? 1.0 : 0.0;
+            }
+            case LIGHT -> {
+                for (int i = 0; i < n; i++) dst[i] = min[i] + Math.floor(rnd.nextDouble() * (span[i] + 1));
+            }
+        }
+    }
+}
@@ -1,21 +1,32 @@
 
 package main.java.com.smartroom.sensors;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class FakeTemperatureSensor implements Sensor {
     private final String id;
     private final String name;
-    private final Random rnd = new Random();
+    private final SplittableRandom rnd;
 
     public FakeTemperatureSensor(String id, String name) {
+        this(id, name, new SplittableRandom());
+    }
+
+    /** Same readings on every run for the same seed. */
+    public FakeTemperatureSensor(String id, String name, long seed) {
+        this(id, name, new SplittableRandom(seed));
+    }
+
+    private FakeTemperatureSensor(String id, String name, SplittableRandom rnd) {
         this.id = id;
         this.name = name;
+        this.rnd = rnd;
     }
 
     @Override public String getId() { return id; }
     @Override public String getName() { return name; }
     @Override public SensorType getType() { return SensorType.TEMPERATURE; }
+    @Override public double deadband() { return 0.5; }
 
     @Override
     public double readValue() {
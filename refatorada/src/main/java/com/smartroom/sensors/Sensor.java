@@ -6,4 +6,7 @@ public interface Sensor {
     String getName();
     SensorType getType();
     double readValue(); // temperature in °C, lux for light; presence returns 1.0 for true, 0.0 for false
+
+    /** Smallest change that counts as a new reading in change-driven mode (0 = any change). */
+    default double deadband() { return 0.0; }
 }
@@ -0,0 +1,50 @@
+
+package main.java.com.smartroom.sensors;
+
+import java.util.List;
+
+/**
+ * Many sensors of one {@link SensorType} read together: {@link #readInto} fills one slot per
+ * sensor in a single call, instead of one virtual {@link Sensor#readValue()} per sensor.
+ * Implementations such as {@link FakeSensorBank} keep their per-sensor state in primitive
+ * arrays, so reading a large bank walks contiguous memory.
+ * Not thread-safe: read by one thread at a time, like a single Sensor.
+ */
+public interface SensorBank {
+
+    SensorType type();
+
+    int size();
+
+    String id(int index);
+
+    /** Stores the current reading of sensor i in {@code dst[i]}, for i in [0, size()). */
+    void readInto(double[] dst);
+
+    /** Smallest change that counts as a new reading in change-driven mode, as in {@link Sensor#deadband()}. */
+    default double deadband() { return 0.0; }
+
+    /** Adapter for existing Sensor objects (one readValue() per sensor); they must all be of {@code type}. */
+    static SensorBank of(SensorType type, List<? extends Sensor> sensors) {
+        Sensor[] all = sensors.toArray(new Sensor[0]);
+        double deadband = Double.POSITIVE_INFINITY;
+        for (Sensor s : all) {
+            if (s.getType() != type) {
+                throw new IllegalArgumentException("Sensor " + s.getId() + " is not of type " + type);
+            }
+            deadband = Math.min(deadband, s.deadband());
+        }
+        double bankDeadband = all.length == 0 ? 0.0 : deadband;
+        return new SensorBank() {
+            @Override public SensorType type() { return type; }
+            @Override public int size() { return all.length; }
+            @Override public String id(int index) { return all[index].getId(); }
+            @Override public double deadband() { return bankDeadband; }
+
+            @Override
+            public void readInto(double[] dst) {
+                for (int i = 0; i < all.length; i++) dst[i] = all[i].readValue();
+            }
+        };
+    }
+}
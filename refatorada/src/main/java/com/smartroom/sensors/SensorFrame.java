@@ -0,0 +1,121 @@
+
+package main.java.com.smartroom.sensors;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One cycle of sensor readings indexed by {@link SensorType} ordinal.
+ * Backed by a double[] plus a bitset of the types read this cycle, so a controller can reuse
+ * a single frame forever (clear, set, hand to rules/repository) without boxing or allocation.
+ * A second bitset flags stale values: a sensor missed its read deadline and the frame carries
+ * its last known value instead (rules can test it with {@code stale(key)}).
+ * Not thread-safe: owned by one controller cycle at a time.
+ */
+public final class SensorFrame {
+
+    private final double[] values = new double[SensorType.count()];
+    private long present;
+    private long stale;
+
+    public SensorFrame() {
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(values, Double.NaN);
+        present = 0;
+        stale = 0;
+    }
+
+    /** A fresh reading; clears the stale flag of the type. */
+    public void set(SensorType type, double value) {
+        values[type.ordinal()] = value;
+        present |= 1L << type.ordinal();
+        stale &= ~(1L << type.ordinal());
+    }
+
+    /** A last known value standing in for a reading that did not arrive in time. */
+    public void setStale(SensorType type, double value) {
+        set(type, value);
+        stale |= 1L << type.ordinal();
+    }
+
+    /** Marks the type stale without a value (no reading has ever arrived). */
+    public void markStale(SensorType type) {
+        stale |= 1L << type.ordinal();
+    }
+
+    public boolean isStale(SensorType type) {
+        return isStale(type.ordinal());
+    }
+
+    public boolean isStale(int ordinal) {
+        return (stale & (1L << ordinal)) != 0;
+    }
+
+    public long staleMask() {
+        return stale;
+    }
+
+    /** Value for the type, NaN when it was not read this cycle. */
+    public double get(SensorType type) {
+        return values[type.ordinal()];
+    }
+
+    public double get(SensorType type, double fallback) {
+        return has(type) ? values[type.ordinal()] : fallback;
+    }
+
+    public double get(int ordinal) {
+        return values[ordinal];
+    }
+
+    public boolean has(SensorType type) {
+        return (present & (1L << type.ordinal())) != 0;
+    }
+
+    public long presentMask() {
+        return present;
+    }
+
+    public int size() {
+        return Long.bitCount(present);
+    }
+
+    /** Copies the raw values (NaN for types not read) into {@code dst} starting at {@code offset}. */
+    public void copyTo(double[] dst, int offset) {
+        System.arraycopy(values, 0, dst, offset, values.length);
+    }
+
+    /** Restores a frame saved with {@link #copyTo(double[], int)} and {@link #presentMask()}. */
+    public void load(double[] src, int offset, long presentMask) {
+        System.arraycopy(src, offset, values, 0, values.length);
+        present = presentMask;
+    }
+
+    /** Boxed key -> value view for the Map based APIs (allocates); stale types also get {@link #staleKey} = 1. */
+    public Map<String, Double> toMap() {
+        Map<String, Double> out = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            if ((present & (1L << i)) != 0) out.put(SensorType.byOrdinal(i).key(), values[i]);
+            if ((stale & (1L << i)) != 0) out.put(staleKey(SensorType.byOrdinal(i).key()), 1.0);
+        }
+        return out;
+    }
+
+    /** Key flagging a stale value in the Map based APIs; the '.' keeps it apart from any DSL name. */
+    public static String staleKey(String key) {
+        return key + ".stale";
+    }
+
+    public static SensorFrame fromMap(Map<String, Double> values) {
+        SensorFrame f = new SensorFrame();
+        values.forEach((k, v) -> {
+            SensorType t = SensorType.fromKey(k);
+            if (t != null && v != null) f.set(t, v);
+        });
+        return f;
+    }
+}
@@ -0,0 +1,146 @@
+
+package main.java.com.smartroom.sensors;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read stage of a control cycle. Sensors without a deadline are read inline on the calling
+ * thread, as before. Sensors with one are read concurrently, one virtual thread per read, and
+ * the cycle waits for each at most until its own deadline, so the stage takes about as long as
+ * the slowest allowed deadline rather than the sum of all reads.
+ *
+ * A sensor that misses its deadline (or throws) contributes its last known value flagged stale
+ * in the {@link SensorFrame}. Its read keeps running and is not restarted until it returns, so a
+ * hung sensor costs one parked virtual thread rather than one per cycle.
+ * With no deadlines configured, {@link #read} allocates nothing.
+ * Not reentrant: one cycle at a time, like the controller that owns it.
+ */
+public final class SensorReader {
+
+    private final List<Sensor> sensors = new ArrayList<>();
+    private final List<Duration> deadlines = new ArrayList<>();
+    private long[] deadlineNanos = new long[0];
+    private Future<Double>[] inFlight = newFutures(0);
+    private double[] lastValues = new double[0];
+    private ExecutorService executor;
+    private int concurrent;
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /** @param deadline maximum wait for this sensor per cycle, or null to read it inline */
+    public void add(Sensor sensor, Duration deadline) {
+        sensors.add(sensor);
+        deadlines.add(deadline);
+        relayout();
+    }
+
+    /** Applies {@code deadline} (null = inline) to every sensor added so far. */
+    public void setDeadline(Duration deadline) {
+        for (int i = 0; i < deadlines.size(); i++) deadlines.set(i, deadline);
+        relayout();
+    }
+
+    public int size() {
+        return sensors.size();
+    }
+
+    private void relayout() {
+        int n = sensors.size();
+        long[] nanos = new long[n];
+        double[] last = new double[n];
+        Future<Double>[] pending = newFutures(n);
+        concurrent = 0;
+        for (int i = 0; i < n; i++) {
+            Duration d = deadlines.get(i);
+            nanos[i] = d == null ? -1 : d.toNanos();
+            if (d != null) concurrent++;
+            last[i] = i < lastValues.length ? lastValues[i] : Double.NaN;
+            if (i < inFlight.length) pending[i] = inFlight[i];
+        }
+        deadlineNanos = nanos;
+        lastValues = last;
+        inFlight = pending;
+        if (concurrent > 0 && executor == null) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sensor-read-", 0).factory());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Future<Double>[] newFutures(int n) {
+        return (Future<Double>[]) new Future<?>[n];
+    }
+
+    /** Fills {@code frame} (already cleared by the caller) with one reading per sensor. */
+    public void read(SensorFrame frame) {
+        if (concurrent == 0) {
+            for (int i = 0; i < sensors.size(); i++) {
+                Sensor s = sensors.get(i);
+                frame.set(s.getType(), s.readValue());
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < sensors.size(); i++) {
+            if (deadlineNanos[i] >= 0 && inFlight[i] == null) inFlight[i] = executor.submit(sensors.get(i)::readValue);
+        }
+        // inline sensors run while the concurrent ones are in flight
+        for (int i = 0; i < sensors.size(); i++) {
+            if (deadlineNanos[i] < 0) lastValues[i] = sensors.get(i).readValue();
+        }
+        // frame filled in registration order, as the sequential loop did (last sensor of a type wins)
+        boolean interrupted = false;
+        for (int i = 0; i < sensors.size(); i++) {
+            Sensor s = sensors.get(i);
+            if (deadlineNanos[i] < 0) {
+                frame.set(s.getType(), lastValues[i]);
+                continue;
+            }
+            Future<Double> f = inFlight[i];
+            try {
+                long wait = interrupted ? 0 : Math.max(0, start + deadlineNanos[i] - System.nanoTime());
+                double v = f.get(wait, TimeUnit.NANOSECONDS);
+                inFlight[i] = null;
+                lastValues[i] = v;
+                frame.set(s.getType(), v);
+            } catch (TimeoutException e) {
+                timeouts.increment();
+                fallback(i, frame);
+            } catch (ExecutionException e) {
+                inFlight[i] = null;
+                failures.increment();
+                fallback(i, frame);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                timeouts.increment();
+                fallback(i, frame);
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void fallback(int i, SensorFrame frame) {
+        SensorType type = sensors.get(i).getType();
+        if (Double.isNaN(lastValues[i])) frame.markStale(type);
+        else frame.setStale(type, lastValues[i]);
+    }
+
+    /** Reads that missed their deadline since creation. */
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    /** Reads that threw since creation. */
+    public long failures() {
+        return failures.sum();
+    }
+}
@@ -2,7 +2,29 @@
 package main.java.com.smartroom.sensors;
 
 public enum SensorType {
-    TEMPERATURE,
-    PRESENCE,
-    LIGHT
+    TEMPERATURE("temp"),
+    PRESENCE("pres"),
+    LIGHT("lux");
+
+    private static final SensorType[] VALUES = values();
+
+    private final String key;
+
+    SensorType(String key) {
+        this.key = key;
+    }
+
+    /** Key used for this type in sensor value maps, rules and repositories. */
+    public String key() { return key; }
+
+    /** Number of sensor types (size of a {@link SensorFrame}). */
+    public static int count() { return VALUES.length; }
+
+    public static SensorType byOrdinal(int ordinal) { return VALUES[ordinal]; }
+
+    /** Type for a value-map key, or null when the key is not a known sensor type. */
+    public static SensorType fromKey(String key) {
+        for (SensorType t : VALUES) if (t.key.equals(key)) return t;
+        return null;
+    }
 }
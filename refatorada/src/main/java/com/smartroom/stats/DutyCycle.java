@@ -0,0 +1,54 @@
+
+package main.java.com.smartroom.stats;
+
+/**
+ * Fraction of time an actuator spent switched on, from timestamped state samples.
+ * The interval between two samples is credited to the state seen at the first one.
+ * O(1) per sample; merging adds the accumulated times. Not thread-safe.
+ */
+public final class DutyCycle {
+
+    private long onMillis;
+    private long totalMillis;
+    private long transitions;
+    private long lastMillis = Long.MIN_VALUE;
+    private boolean lastOn;
+
+    public void update(long epochMillis, boolean on) {
+        if (lastMillis != Long.MIN_VALUE) {
+            long dt = epochMillis - lastMillis;
+            if (dt > 0) {
+                totalMillis += dt;
+                if (lastOn) onMillis += dt;
+            }
+            if (on != lastOn) transitions++;
+        }
+        lastMillis = epochMillis;
+        lastOn = on;
+    }
+
+    public void merge(DutyCycle other) {
+        onMillis += other.onMillis;
+        totalMillis += other.totalMillis;
+        transitions += other.transitions;
+    }
+
+    public DutyCycle copy() {
+        DutyCycle c = new DutyCycle();
+        c.onMillis = onMillis;
+        c.totalMillis = totalMillis;
+        c.transitions = transitions;
+        c.lastMillis = lastMillis;
+        c.lastOn = lastOn;
+        return c;
+    }
+
+    /** On-time fraction in [0, 1], or NaN before two samples were seen. */
+    public double ratio() {
+        return totalMillis == 0 ? Double.NaN : (double) onMillis / totalMillis;
+    }
+
+    public long onMillis() { return onMillis; }
+    public long totalMillis() { return totalMillis; }
+    public long transitions() { return transitions; }
+}
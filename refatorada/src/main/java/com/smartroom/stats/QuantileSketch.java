@@ -0,0 +1,139 @@
+
+package main.java.com.smartroom.stats;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with relative-error guarantees (DDSketch-style log buckets).
+ * A value x lands in bucket ceil(log_gamma |x|), with gamma = (1 + a) / (1 - a), so any
+ * quantile is reported within relative error a of a real sample. Positive and negative
+ * values have their own dense stores that grow to the range actually seen; after that an
+ * update is O(1) and allocation-free. Two sketches with the same accuracy merge by adding
+ * bucket counts. Not thread-safe.
+ */
+public final class QuantileSketch {
+
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final Store positive = new Store();
+    private final Store negative = new Store();
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(0.01);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) throw new IllegalArgumentException("relativeAccuracy must be in (0, 1)");
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (value > MIN_INDEXABLE) positive.add(index(value), 1);
+        else if (value < -MIN_INDEXABLE) negative.add(index(-value), 1);
+        else zeroCount++;
+        count++;
+    }
+
+    /** Value at quantile q in [0, 1], or NaN when empty. */
+    public double quantile(double q) {
+        if (count == 0) return Double.NaN;
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, q)) * (count - 1));
+        // most negative first: negative store from the highest |x| bucket down
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) return -value(negative.offset + i);
+        }
+        seen += zeroCount;
+        if (seen > rank) return 0.0;
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) return value(positive.offset + i);
+        }
+        return value(positive.offset + positive.counts.length - 1);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.gamma != gamma) throw new IllegalArgumentException("Sketches with different accuracy cannot be merged");
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch c = new QuantileSketch(relativeAccuracy);
+        c.merge(this);
+        return c;
+    }
+
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // midpoint of bucket i, within relativeAccuracy of every value it holds
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /** Bucket counts for indexes [offset, offset + counts.length). */
+    private static final class Store {
+        long[] counts = new long[0];
+        int offset;
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = index - 4;
+            } else if (index < offset || index >= offset + counts.length) {
+                grow(index);
+            }
+            counts[index - offset] += n;
+        }
+
+        private void grow(int index) {
+            int lo = Math.min(offset, index);
+            int hi = Math.max(offset + counts.length - 1, index);
+            // leave headroom on both sides so a drifting signal does not re-grow every bucket
+            int size = Math.max(hi - lo + 1, counts.length) * 2;
+            int newOffset = lo - (size - (hi - lo + 1)) / 2;
+            long[] grown = new long[size];
+            System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+            counts = grown;
+            offset = newOffset;
+        }
+
+        void merge(Store other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) add(other.offset + i, other.counts[i]);
+            }
+        }
+
+        void clear() {
+            Arrays.fill(counts, 0);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+
+package main.java.com.smartroom.stats;
+
+import main.java.com.smartroom.actuators.ActuatorState;
+import main.java.com.smartroom.sensors.SensorFrame;
+import main.java.com.smartroom.sensors.SensorType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Running aggregates of one room (or, after {@link #merge}, of many): a {@link RunningStats}
+ * per sensor type and a {@link DutyCycle} per actuator. {@link #record} costs O(1) per sensor
+ * and actuator and allocates nothing, so it can sit on the control cycle; {@link #render}
+ * does not depend on how many samples were recorded.
+ * All methods are synchronized: the control loop records while reports are rendered elsewhere.
+ */
+public final class RoomStats {
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final RunningStats[] sensors = new RunningStats[SensorType.count()];
+    private final List<String> actuatorNames = new ArrayList<>();
+    private final List<DutyCycle> dutyCycles = new ArrayList<>();
+    // identity-cached mapping from the last seen ActuatorState layout to our slots
+    private List<String> layout;
+    private DutyCycle[] slots = new DutyCycle[0];
+    private long samples;
+
+    public RoomStats() {
+        for (int i = 0; i < sensors.length; i++) sensors[i] = new RunningStats();
+    }
+
+    public synchronized void record(long epochMillis, SensorFrame frame, ActuatorState actuators) {
+        long present = frame.presentMask();
+        for (int i = 0; i < sensors.length; i++) {
+            if ((present & (1L << i)) != 0) sensors[i].add(frame.get(i));
+        }
+        if (actuators.names() != layout) relayout(actuators.names());
+        for (int i = 0; i < slots.length; i++) slots[i].update(epochMillis, actuators.isOn(i));
+        samples++;
+    }
+
+    private void relayout(List<String> names) {
+        DutyCycle[] mapped = new DutyCycle[names.size()];
+        for (int i = 0; i < mapped.length; i++) mapped[i] = dutyCycle(names.get(i));
+        slots = mapped;
+        layout = names;
+    }
+
+    private DutyCycle dutyCycle(String name) {
+        int i = actuatorNames.indexOf(name);
+        if (i >= 0) return dutyCycles.get(i);
+        DutyCycle d = new DutyCycle();
+        actuatorNames.add(name);
+        dutyCycles.add(d);
+        return d;
+    }
+
+    /** Adds the aggregates of {@code other} (e.g. another room) into this instance. */
+    public void merge(RoomStats other) {
+        RoomStats snapshot = other.copy();
+        synchronized (this) {
+            for (int i = 0; i < sensors.length; i++) sensors[i].merge(snapshot.sensors[i]);
+            for (int i = 0; i < snapshot.actuatorNames.size(); i++) {
+                dutyCycle(snapshot.actuatorNames.get(i)).merge(snapshot.dutyCycles.get(i));
+            }
+            samples += snapshot.samples;
+        }
+    }
+
+    public synchronized RoomStats copy() {
+        RoomStats c = new RoomStats();
+        for (int i = 0; i < sensors.length; i++) c.sensors[i] = sensors[i].copy();
+        c.actuatorNames.addAll(actuatorNames);
+        for (DutyCycle d : dutyCycles) c.dutyCycles.add(d.copy());
+        c.samples = samples;
+        return c;
+    }
+
+    /** Copy of the aggregates of one sensor type. */
+    public synchronized RunningStats sensor(SensorType type) {
+        return sensors[type.ordinal()].copy();
+    }
+
+    /** Copy of the duty cycle of one actuator, or null if it was never seen. */
+    public synchronized DutyCycle actuator(String name) {
+        int i = actuatorNames.indexOf(name);
+        return i < 0 ? null : dutyCycles.get(i).copy();
+    }
+
+    public synchronized long samples() {
+        return samples;
+    }
+
+    /** Report section with the aggregates; cost independent of the number of samples. */
+    public synchronized void render(StringBuilder sb) {
+        sb.append("AGREGADOS (").append(samples).append(" amostras):\n");
+        for (SensorType type : SensorType.values()) {
+            RunningStats s = sensors[type.ordinal()];
+            if (s.count() == 0) continue;
+            sb.append(String.format(Locale.ROOT, "- %s: min %.2f | máx %.2f | média %.2f | desvio %.2f",
+                    type.key(), s.min(), s.max(), s.mean(), s.stddev()));
+            for (double q : QUANTILES) {
+                sb.append(String.format(Locale.ROOT, " | p%d %.2f", Math.round(q * 100), s.quantile(q)));
+            }
+            sb.append('\n');
+        }
+        for (int i = 0; i < actuatorNames.size(); i++) {
+            DutyCycle d = dutyCycles.get(i);
+            sb.append(String.format(Locale.ROOT, "- %s: ligado %.1f%% do tempo | %d comutações%n",
+                    actuatorNames.get(i), Double.isNaN(d.ratio()) ? 0.0 : d.ratio() * 100, d.transitions()));
+        }
+    }
+}
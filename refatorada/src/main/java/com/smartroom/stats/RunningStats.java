@@ -0,0 +1,96 @@
+
+package main.java.com.smartroom.stats;
+
+/**
+ * Running aggregates of one signal, updated in O(1) per sample:
+ * count, min, max, mean and variance (Welford's algorithm) plus a {@link QuantileSketch}.
+ * Two instances merge exactly (Chan et al. parallel variance), so per-room aggregates
+ * can be combined into building-wide ones. Not thread-safe.
+ */
+public final class RunningStats {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private final QuantileSketch sketch;
+
+    public RunningStats() {
+        this(new QuantileSketch());
+    }
+
+    private RunningStats(QuantileSketch sketch) {
+        this.sketch = sketch;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) min = value;
+        if (value > max) max = value;
+        sketch.add(value);
+    }
+
+    public void merge(RunningStats other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+        } else {
+            long n = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / n;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / n);
+            count = n;
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sketch.merge(other.sketch);
+    }
+
+    public RunningStats copy() {
+        RunningStats c = new RunningStats(sketch.copy());
+        c.count = count;
+        c.mean = mean;
+        c.m2 = m2;
+        c.min = min;
+        c.max = max;
+        return c;
+    }
+
+    public void clear() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        sketch.clear();
+    }
+
+    public long count() { return count; }
+    public double mean() { return count == 0 ? Double.NaN : mean; }
+    public double min() { return count == 0 ? Double.NaN : min; }
+    public double max() { return count == 0 ? Double.NaN : max; }
+
+    /** Sample variance (n - 1). */
+    public double variance() {
+        return count < 2 ? 0.0 : m2 / (count - 1);
+    }
+
+    public double stddev() {
+        return Math.sqrt(variance());
+    }
+
+    /** Approximate quantile, clamped to the exact [min, max] (q = 0 and q = 1 are exact). */
+    public double quantile(double q) {
+        if (count == 0) return Double.NaN;
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        return Math.max(min, Math.min(max, sketch.quantile(q)));
+    }
+}
@@ -2,7 +2,13 @@
 package main.java.com.smartroom.time;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public interface Clock {
     LocalDateTime now();
+
+    /** Current time as epoch millis; override to avoid building a LocalDateTime on hot paths. */
+    default long epochMillis() {
+        return now().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
 }
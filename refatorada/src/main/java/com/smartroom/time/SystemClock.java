@@ -5,4 +5,5 @@ import java.time.LocalDateTime;
 
 public class SystemClock implements Clock {
     @Override public LocalDateTime now() { return LocalDateTime.now(); }
+    @Override public long epochMillis() { return System.currentTimeMillis(); }
 }
@@ -0,0 +1,50 @@
+
+package main.java.com.smartroom.time;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Clock that only moves when told to ({@link #advance}, {@link #set}), for simulations and
+ * capacity tests: a controller driven by it sees the same timestamps on every run, however
+ * fast the cycles actually execute.
+ * Reads from other threads see the latest value; advancing is meant for a single owner thread.
+ */
+public final class VirtualClock implements Clock {
+
+    private final ZoneId zone;
+    private volatile long millis;
+
+    public VirtualClock(long startEpochMillis) {
+        this(startEpochMillis, ZoneId.systemDefault());
+    }
+
+    public VirtualClock(long startEpochMillis, ZoneId zone) {
+        this.millis = startEpochMillis;
+        this.zone = zone;
+    }
+
+    @Override
+    public LocalDateTime now() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+    }
+
+    @Override
+    public long epochMillis() {
+        return millis;
+    }
+
+    public void advance(long deltaMillis) {
+        millis += deltaMillis;
+    }
+
+    public void advance(Duration delta) {
+        advance(delta.toMillis());
+    }
+
+    public void set(long epochMillis) {
+        this.millis = epochMillis;
+    }
+}
@@ -0,0 +1,190 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+/**
+ * Benchmark da API HTTP (SmartRoomSystem.getSensorsJson / handle) com 10, 1k e 100k sensores.
+ * Sem JMH (o projeto compila com javac puro): aquecimento + medição por tempo fixo,
+ * reportando ops/s, ns/op, bytes alocados/op e coletas de GC.
+ *
+ * Uso (a partir da raiz do repositório):
+ *   javac -encoding UTF-8 -d out/bench-monitor $(find smart-room-monitor/src -name "*.java")
+ *   java -cp out/bench-monitor ApiBenchmark [--seconds=3] [--sizes=10,1000,100000]
+ */
+public class ApiBenchmark {
+
+    private static final PrintStream OUT = System.out;
+    private static double seconds = 3;
+    private static long sink;
+    private static Path CHECKPOINT;
+
+    public static void main(String[] args) throws Exception {
+        String sizes = "10,1000,100000";
+        for (String a : args) {
+            if (a.startsWith("--seconds=")) seconds = Double.parseDouble(a.substring("--seconds=".length()));
+            if (a.startsWith("--sizes=")) sizes = a.substring("--sizes=".length());
+        }
+
+        // o construtor imprime no console e agenda o Timer: silenciar e parar a coleta
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        SmartRoomSystem system = new SmartRoomSystem();
+        SmartRoomSystem.timer.cancel();
+
+        CHECKPOINT = Files.createTempFile("smartroom-checkpoint", ".bin");
+        CHECKPOINT.toFile().deleteOnExit();
+
+        Method getSensorsJson = SmartRoomSystem.class.getDeclaredMethod("getSensorsJson");
+        getSensorsJson.setAccessible(true);
+
+        OUT.printf("%-36s %12s %14s %14s %6s %8s%n", "benchmark", "ops/s", "ns/op", "B/op", "gc", "gc ms");
+        for (String s : sizes.split(",")) {
+            int n = Integer.parseInt(s.trim());
+            fillSensors(n);
+            run("getSensorsJson n=" + n, () -> ((String) invoke(getSensorsJson, system)).length());
+            run("handle GET /api/sensors n=" + n, () -> exchange(system, "GET", "/api/sensors"));
+            run("handle GET /api/data n=" + n, () -> exchange(system, "GET", "/api/data"));
+            run("handle GET /api/sensors?tipo= n=" + n, () -> exchange(system, "GET", "/api/sensors?tipo=umidade"));
+            // direto no cadastro: o DELETE da API também regrava o arquivo de dados
+            run("sensors add+remove n=" + n, () -> {
+                SmartRoomSystem.sensors.add("BENCH", "Bench", "umidade", "0", true);
+                return SmartRoomSystem.sensors.remove("BENCH").seq();
+            });
+            // checkpoint binário (inicialização): gravação e carga completas do cadastro
+            run("checkpoint write n=" + n, () -> checkpoint(true));
+            run("checkpoint load n=" + n, () -> checkpoint(false));
+        }
+        // log de ações já deu várias voltas: memória e custo da página não dependem do total registrado
+        ActionLog log = SmartRoomSystem.actionLog;
+        for (int i = 0; i < 10 * log.capacity(); i++) log.add(i, "luz", "ligar", "automatico");
+        run("actionLog add", () -> log.add(0, "luz", "ligar", "automatico").seq());
+        run("handle GET /api/actions?limit=100", () -> exchange(system, "GET", "/api/actions?limit=100"));
+        run("handle GET /api/actions?after=", () -> exchange(system, "GET", "/api/actions?after=" + (log.lastSeq() - 50)));
+        System.setOut(OUT);
+        System.exit(0);
+    }
+
+    private static void fillSensors(int n) {
+        SmartRoomSystem.sensors.clear();
+        String[] tipos = {"temperatura", "presenca", "luminosidade", "umidade"};
+        for (int i = 0; i < n; i++) {
+            SmartRoomSystem.sensors.add("S" + i, "Sensor " + i, tipos[i % tipos.length], "0", true);
+        }
+    }
+
+    private static long checkpoint(boolean write) {
+        try {
+            if (write) {
+                Checkpoint.write(CHECKPOINT, SmartRoomSystem.sensors, SmartRoomSystem.actionLog, false, false);
+                return Files.size(CHECKPOINT);
+            }
+            return Checkpoint.load(CHECKPOINT, SmartRoomSystem.sensors, new ActionLog(16, null)).sensors();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object invoke(Method m, Object target) {
+        try {
+            return m.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long exchange(SmartRoomSystem system, String method, String path) {
+        FakeExchange ex = new FakeExchange(method, path);
+        try {
+            system.handle(ex);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return ex.bytesWritten;
+    }
+
+    private static void run(String name, LongSupplier op) {
+        long warmEnd = System.nanoTime() + 1_000_000_000L;
+        while (System.nanoTime() < warmEnd) sink += op.getAsLong();
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        long gc0 = gcCount(), gcMs0 = gcMillis();
+        long alloc0 = mx.getThreadAllocatedBytes(tid);
+        long ops = 0;
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        while (System.nanoTime() < end) {
+            sink += op.getAsLong();
+            ops++;
+        }
+        long elapsed = System.nanoTime() - start;
+        double bytes = (mx.getThreadAllocatedBytes(tid) - alloc0) / (double) ops;
+        OUT.printf("%-36s %,12.0f %,14.1f %,14.1f %6d %8d%n", name, ops / (elapsed / 1e9), elapsed / (double) ops,
+                bytes, gcCount() - gc0, gcMillis() - gcMs0);
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+
+    /**
+     * HttpExchange em memória: corpo da resposta é descartado, só os bytes são contados.
+     */
+    static class FakeExchange extends HttpExchange {
+        private final String method;
+        private final URI uri;
+        private final Headers requestHeaders = new Headers();
+        private final Headers responseHeaders = new Headers();
+        private int responseCode = -1;
+        long bytesWritten;
+
+        private final OutputStream body = new OutputStream() {
+            @Override public void write(int b) { bytesWritten++; }
+            @Override public void write(byte[] b, int off, int len) { bytesWritten += len; }
+        };
+
+        FakeExchange(String method, String path) {
+            this.method = method;
+            this.uri = URI.create(path);
+        }
+
+        @Override public Headers getRequestHeaders() { return requestHeaders; }
+        @Override public Headers getResponseHeaders() { return responseHeaders; }
+        @Override public URI getRequestURI() { return uri; }
+        @Override public String getRequestMethod() { return method; }
+        @Override public HttpContext getHttpContext() { return null; }
+        @Override public void close() { }
+        @Override public InputStream getRequestBody() { return new ByteArrayInputStream(new byte[0]); }
+        @Override public OutputStream getResponseBody() { return body; }
+        @Override public void sendResponseHeaders(int rCode, long responseLength) { responseCode = rCode; }
+        @Override public InetSocketAddress getRemoteAddress() { return new InetSocketAddress("127.0.0.1", 0); }
+        @Override public int getResponseCode() { return responseCode; }
+        @Override public InetSocketAddress getLocalAddress() { return new InetSocketAddress("127.0.0.1", 8080); }
+        @Override public String getProtocol() { return "HTTP/1.1"; }
+        @Override public Object getAttribute(String name) { return null; }
+        @Override public void setAttribute(String name, Object value) { }
+        @Override public void setStreams(InputStream i, OutputStream o) { }
+        @Override public HttpPrincipal getPrincipal() { return null; }
+    }
+}
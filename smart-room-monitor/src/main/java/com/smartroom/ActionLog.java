@@ -0,0 +1,193 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log de ações com capacidade fixa: buffer circular sem locks, indexado pelo número de sequência.
+ *
+ * Cada ação recebe um seq crescente (a partir de 1) e ocupa o slot seq % capacidade; quando o
+ * buffer enche, a mais antiga é substituída e, se houver arquivo de spill, gravada nele. A memória
+ * fica constante e a leitura paginada ({@link #page}) só percorre os slots pedidos, sem copiar as
+ * ações (registros imutáveis).
+ *
+ * Quem chama {@link #add} nunca pega lock nem faz I/O: a ação substituída vai para uma fila sem
+ * locks e a thread "action-log-spill" a grava no arquivo em lote, com um flush por lote
+ * (a cada SPILL_INTERVAL_MS). Sem arquivo de spill, a substituída é só descartada.
+ */
+public final class ActionLog implements Closeable {
+
+    private static final long SPILL_INTERVAL_MS = 200;
+
+    /** Ação registrada: horário (epoch millis), dispositivo, ação e causa. */
+    public record Action(long seq, long epochMillis, String device, String action, String cause) {
+
+        /** Texto para exibição, no formato antigo do log (sem o horário). */
+        public String text() {
+            boolean on = "ligar".equals(action);
+            String suffix = switch (cause) {
+                case "api" -> " manualmente via API";
+                case "sem presenca" -> " (sem presença)";
+                default -> "";
+            };
+            return switch (device) {
+                case "luz" -> "Luz " + (on ? "LIGADA" : "DESLIGADA") + suffix;
+                case "ventilador" -> "Ventilador " + (on ? "LIGADO" : "DESLIGADO") + suffix;
+                default -> "Sensor " + ("cadastrar".equals(action) ? "cadastrado" : "removido") + ": "
+                        + device.substring(device.indexOf(':') + 1);
+            };
+        }
+
+        String toLine() {
+            return seq + "|" + epochMillis + "|" + device + "|" + action + "|" + cause;
+        }
+    }
+
+    private final AtomicReferenceArray<Action> ring;
+    private final int mask;
+    private final AtomicLong lastSeq = new AtomicLong();
+    private final Path spillFile;
+    // substituídas à espera da thread de spill (só existe com spillFile)
+    private final ConcurrentLinkedQueue<Action> evicted = new ConcurrentLinkedQueue<>();
+    private final Thread spillWriter;
+    private volatile boolean closed;
+    private BufferedWriter spill;
+
+    /** @param capacity arredondada para potência de 2; @param spillFile arquivo para ações descartadas, ou null */
+    public ActionLog(int capacity, Path spillFile) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.spillFile = spillFile;
+        if (spillFile == null) {
+            this.spillWriter = null;
+        } else {
+            this.spillWriter = new Thread(this::spillLoop, "action-log-spill");
+            spillWriter.setDaemon(true);
+            spillWriter.start();
+        }
+    }
+
+    public Action add(long epochMillis, String device, String action, String cause) {
+        Action a = new Action(lastSeq.incrementAndGet(), epochMillis, device, action, cause);
+        int slot = (int) (a.seq() & mask);
+        while (true) {
+            Action current = ring.get(slot);
+            if (current != null && current.seq() > a.seq()) {
+                // um produtor mais novo já deu a volta no buffer: esta ação sai direto para o spill
+                if (spillWriter != null) evicted.offer(a);
+                return a;
+            }
+            if (ring.compareAndSet(slot, current, a)) {
+                if (current != null && spillWriter != null) evicted.offer(current);
+                return a;
+            }
+        }
+    }
+
+    /** Até {@code limit} ações com seq maior que {@code after}, em ordem; começa na mais antiga ainda em memória. */
+    public List<Action> page(long after, int limit) {
+        long last = lastSeq.get();
+        // after além da última ação: página vazia (e after + 1 não estoura em Long.MAX_VALUE)
+        long seq = Math.max(Math.min(after, last) + 1, oldestSeq(last));
+        List<Action> result = new ArrayList<>((int) Math.max(0, Math.min(limit, last - seq + 1)));
+        for (; seq <= last && result.size() < limit; seq++) {
+            Action a = ring.get((int) (seq & mask));
+            if (a == null || a.seq() < seq) break;  // seq reservado mas ainda não publicado
+            if (a.seq() == seq) result.add(a);      // se maior, foi substituído durante a leitura
+        }
+        return result;
+    }
+
+    /**
+     * Recoloca as ações de um checkpoint: só na inicialização, antes de qualquer {@link #add}.
+     * A numeração continua de {@code lastSeq}; ações que não cabem na capacidade atual ficam de fora.
+     */
+    public void restore(long lastSeq, List<Action> actions) {
+        long oldest = oldestSeq(lastSeq);
+        for (Action a : actions) {
+            if (a.seq() >= oldest && a.seq() <= lastSeq) ring.set((int) (a.seq() & mask), a);
+        }
+        this.lastSeq.set(lastSeq);
+    }
+
+    /** As {@code n} ações mais recentes, em ordem. */
+    public List<Action> latest(int n) {
+        return page(lastSeq.get() - n, n);
+    }
+
+    /** Seq da última ação registrada (= total de ações desde o início). */
+    public long lastSeq() {
+        return lastSeq.get();
+    }
+
+    /** Seq da ação mais antiga ainda em memória. */
+    public long oldestSeq() {
+        return oldestSeq(lastSeq.get());
+    }
+
+    private long oldestSeq(long last) {
+        return Math.max(1, last - mask);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private void spillLoop() {
+        while (!closed) {
+            drainSpill();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(SPILL_INTERVAL_MS));
+        }
+    }
+
+    // Grava tudo o que estiver na fila e faz um único flush; só a thread de spill e close() chamam
+    private synchronized void drainSpill() {
+        Action a = evicted.poll();
+        if (a == null) return;
+        try {
+            if (spill == null) {
+                spill = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (; a != null; a = evicted.poll()) {
+                spill.write(a.toLine());
+                spill.newLine();
+            }
+            spill.flush();
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar spill do log de ações: " + e.getMessage());
+        }
+    }
+
+    /** Para a thread de spill depois de gravar o que ainda está na fila. */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (spillWriter != null) {
+            LockSupport.unpark(spillWriter);
+            try {
+                spillWriter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            drainSpill();
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Controle de admissão do HttpServer: limita quantas requisições são processadas ao mesmo
+ * tempo (no total e por endpoint). Quando não há vaga, responde 503 com Retry-After na hora,
+ * em vez de enfileirar trabalho que o servidor não vai conseguir atender.
+ *
+ * Limites por endpoint usam o prefixo mais longo do caminho, ex.: "/api/sensors=8,/api/report=2".
+ */
+public class AdmissionFilter extends Filter {
+
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Map<String, Semaphore> endpointLimits = new LinkedHashMap<>();
+    private final int retryAfterSeconds;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdmissionFilter(int maxInFlight, String endpointLimits, int retryAfterSeconds) {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight deve ser > 0");
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.retryAfterSeconds = retryAfterSeconds;
+        if (endpointLimits != null && !endpointLimits.isBlank()) {
+            for (String entry : endpointLimits.split(",")) {
+                String[] kv = entry.trim().split("=");
+                if (kv.length != 2) throw new IllegalArgumentException("Limite inválido: " + entry);
+                this.endpointLimits.put(kv[0].trim(), new Semaphore(Integer.parseInt(kv[1].trim())));
+            }
+        }
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (!inFlight.tryAcquire()) {
+            reject(exchange, "Servidor ocupado");
+            return;
+        }
+        try {
+            Semaphore endpoint = endpointLimit(exchange.getRequestURI().getPath());
+            if (endpoint == null) {
+                chain.doFilter(exchange);
+            } else if (endpoint.tryAcquire()) {
+                try {
+                    chain.doFilter(exchange);
+                } finally {
+                    endpoint.release();
+                }
+            } else {
+                reject(exchange, "Endpoint ocupado");
+            }
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private Semaphore endpointLimit(String path) {
+        Semaphore best = null;
+        int bestLength = -1;
+        for (Map.Entry<String, Semaphore> e : endpointLimits.entrySet()) {
+            if (path.startsWith(e.getKey()) && e.getKey().length() > bestLength) {
+                best = e.getValue();
+                bestLength = e.getKey().length();
+            }
+        }
+        return best;
+    }
+
+    private void reject(HttpExchange exchange, String message) throws IOException {
+        rejected.incrementAndGet();
+        byte[] body = ("{\"error\": \"" + message + ", tente novamente\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        exchange.sendResponseHeaders(503, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    public int inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public String description() {
+        return "Limite de requisições simultâneas (503 + Retry-After)";
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Checkpoint binário do estado (cadastro de sensores, log de ações e atuadores), para a
+ * inicialização não depender do parse linha a linha do sensors.txt com Scanner.
+ *
+ * Formato (big-endian, versão 1):
+ *   [magic "SRCK":int][versão:short][gravado em:long][luz:byte][ventilador:byte]
+ *   [nSensores:int] nSensores x (id, nome, tipo, valor: string)[ativo:byte]
+ *   [últimoSeq:long][nAções:int] nAções x [seq:long][epochMillis:long](dispositivo, ação, causa: string)
+ *   [crc32:int] de todo o conteúdo anterior
+ * onde string = [tamanho:int][bytes UTF-8].
+ *
+ * A gravação vai para um arquivo temporário renomeado por cima do anterior, então a leitura
+ * vê o checkpoint antigo ou o novo inteiro. A leitura é um único readAllBytes com parse em
+ * memória; arquivo ausente, de outra versão ou com CRC inválido não altera nada (o chamador
+ * cai no formato texto).
+ */
+public class Checkpoint {
+
+    static final int MAGIC = 0x5352434B; // "SRCK"
+    static final short VERSION = 1;
+    // cabeçalho, contadores e CRC de um checkpoint vazio
+    private static final int MIN_BYTES = 4 + 2 + 8 + 1 + 1 + 4 + 8 + 4 + 4;
+
+    /** Resumo do que foi restaurado por {@link #load}. */
+    public record Restored(long savedAt, boolean lightStatus, boolean fanStatus, int sensors, int actions) {}
+
+    public static void write(Path file, SensorRegistry sensors, ActionLog actionLog,
+                             boolean lightStatus, boolean fanStatus) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + sensors.size() * 64);
+        CheckedOutputStream checked = new CheckedOutputStream(bytes, new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeBoolean(lightStatus);
+        out.writeBoolean(fanStatus);
+
+        // cópia fracamente consistente: o contador vem da lista efetivamente gravada
+        List<SensorRegistry.Sensor> all = new ArrayList<>(sensors.all());
+        out.writeInt(all.size());
+        for (SensorRegistry.Sensor s : all) {
+            writeString(out, s.id());
+            writeString(out, s.nome());
+            writeString(out, s.tipo());
+            writeString(out, s.valor());
+            out.writeBoolean(s.ativo());
+        }
+
+        long lastSeq = actionLog.lastSeq();
+        List<ActionLog.Action> actions = actionLog.page(0, actionLog.capacity());
+        out.writeLong(lastSeq);
+        out.writeInt(actions.size());
+        for (ActionLog.Action a : actions) {
+            out.writeLong(a.seq());
+            out.writeLong(a.epochMillis());
+            writeString(out, a.device());
+            writeString(out, a.action());
+            writeString(out, a.cause());
+        }
+
+        out.writeInt((int) checked.getChecksum().getValue());
+        out.flush();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /**
+     * Substitui o conteúdo de {@code sensors} e {@code actionLog} (recém-criados) pelo checkpoint.
+     * Retorna null, sem tocar em nada, se o arquivo não existir ou não for um checkpoint válido.
+     */
+    public static Restored load(Path file, SensorRegistry sensors, ActionLog actionLog) throws IOException {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (data.length < MIN_BYTES) return null;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - Integer.BYTES);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (in.getInt() != MAGIC || in.getShort() != VERSION
+                || in.getInt(data.length - Integer.BYTES) != (int) crc.getValue()) {
+            return null;
+        }
+        try {
+            long savedAt = in.getLong();
+            boolean light = in.get() != 0;
+            boolean fan = in.get() != 0;
+
+            int sensorCount = in.getInt();
+            List<String[]> rows = new ArrayList<>(sensorCount);
+            boolean[] ativos = new boolean[sensorCount];
+            for (int i = 0; i < sensorCount; i++) {
+                rows.add(new String[]{readString(in, data), readString(in, data), readString(in, data).intern(), readString(in, data)});
+                ativos[i] = in.get() != 0;
+            }
+
+            long lastSeq = in.getLong();
+            int actionCount = in.getInt();
+            List<ActionLog.Action> actions = new ArrayList<>(actionCount);
+            for (int i = 0; i < actionCount; i++) {
+                long seq = in.getLong();
+                long millis = in.getLong();
+                actions.add(new ActionLog.Action(seq, millis, readString(in, data),
+                        readString(in, data).intern(), readString(in, data).intern()));
+            }
+
+            // só altera o estado depois de o arquivo inteiro ter sido lido sem erro
+            sensors.clear();
+            for (int i = 0; i < sensorCount; i++) {
+                String[] r = rows.get(i);
+                sensors.add(r[0], r[1], r[2], r[3], ativos[i]);
+            }
+            actionLog.restore(lastSeq, actions);
+            return new Restored(savedAt, light, fan, sensorCount, actionCount);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer in, byte[] data) {
+        int length = in.getInt();
+        String s = new String(data, in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+}
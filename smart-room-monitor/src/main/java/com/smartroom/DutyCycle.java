@@ -0,0 +1,47 @@
+/**
+ * Fração do tempo em que um dispositivo ficou ligado, a partir de amostras com horário.
+ * O intervalo entre duas amostras conta para o estado da primeira. O(1) por amostra.
+ */
+public class DutyCycle {
+
+    private long onMillis;
+    private long totalMillis;
+    private long transitions;
+    private long lastMillis = Long.MIN_VALUE;
+    private boolean lastOn;
+
+    public synchronized void update(long epochMillis, boolean on) {
+        if (lastMillis != Long.MIN_VALUE) {
+            long dt = epochMillis - lastMillis;
+            if (dt > 0) {
+                totalMillis += dt;
+                if (lastOn) onMillis += dt;
+            }
+            if (on != lastOn) transitions++;
+        }
+        lastMillis = epochMillis;
+        lastOn = on;
+    }
+
+    public void merge(DutyCycle other) {
+        long[] o = other.totals();
+        synchronized (this) {
+            onMillis += o[0];
+            totalMillis += o[1];
+            transitions += o[2];
+        }
+    }
+
+    private synchronized long[] totals() {
+        return new long[]{onMillis, totalMillis, transitions};
+    }
+
+    /** Fração ligada entre 0 e 1 (0 antes de duas amostras). */
+    public synchronized double ratio() {
+        return totalMillis == 0 ? 0.0 : (double) onMillis / totalMillis;
+    }
+
+    public synchronized long transitions() {
+        return transitions;
+    }
+}
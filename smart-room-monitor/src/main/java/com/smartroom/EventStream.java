@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Endpoint Server-Sent Events (/api/stream).
+ *
+ * Cada navegador mantém UMA conexão aberta e recebe apenas o que mudou, em vez de
+ * consultar /api/data, /api/actions e /api/sensors a cada poucos segundos.
+ * O handler não bloqueia a thread do HttpServer: registra o cliente e retorna;
+ * todas as escritas (snapshot inicial, eventos e heartbeat) passam por uma única
+ * thread "sse-writer", o que mantém a ordem dos eventos igual para todos os clientes.
+ */
+public class EventStream implements HttpHandler {
+
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final int RETRY_MILLIS = 3000;
+
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Supplier<String> snapshot;
+    private long nextId;
+    private volatile boolean closed;
+
+    /**
+     * @param snapshot eventos (já no formato SSE) enviados a cada cliente que conecta,
+     *                 para que ele não precise de uma carga inicial via polling
+     */
+    public EventStream(Supplier<String> snapshot) {
+        this.snapshot = snapshot;
+        writer.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (closed) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("GET")) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0); // chunked: a resposta fica aberta
+
+        Client client = new Client(exchange);
+        // o cliente entra na lista ANTES do snapshot: uma mudança publicada depois dele já
+        // encontra a lista não vazia e vai para a fila atrás deste envio; uma anterior está no snapshot
+        boolean queued = submit(() -> {
+            clients.add(client);
+            if (!client.send("retry: " + RETRY_MILLIS + "\n\n" + snapshot.get())) {
+                clients.remove(client);
+            }
+        });
+        if (!queued) exchange.close();
+    }
+
+    /** Envia um evento a todos os clientes conectados; data deve ser JSON em uma linha. */
+    public void publish(String event, String data) {
+        if (clients.isEmpty()) return;
+        submit(() -> {
+            String frame = "id: " + (++nextId) + "\nevent: " + event + "\ndata: " + data + "\n\n";
+            broadcast(frame);
+        });
+    }
+
+    // Depois de close() as tarefas são descartadas em vez de estourar no Timer ou na thread HTTP
+    private boolean submit(Runnable task) {
+        if (closed) return false;
+        try {
+            writer.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    public int clientCount() {
+        return clients.size();
+    }
+
+    /** Monta um evento SSE (usado no snapshot inicial). */
+    public static String frame(String event, String data) {
+        return "event: " + event + "\ndata: " + data + "\n\n";
+    }
+
+    // comentário SSE: mantém proxies abertos e detecta clientes que já saíram
+    private void heartbeat() {
+        broadcast(": ping\n\n");
+    }
+
+    private void broadcast(String frame) {
+        for (Client c : clients) {
+            if (!c.send(frame)) clients.remove(c);
+        }
+    }
+
+    public void close() {
+        closed = true;
+        writer.shutdownNow();
+        for (Client c : clients) c.exchange.close();
+        clients.clear();
+    }
+
+    private static class Client {
+        final HttpExchange exchange;
+        final OutputStream out;
+
+        Client(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        boolean send(String frame) {
+            try {
+                out.write(frame.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                return true;
+            } catch (IOException e) {
+                exchange.close();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Histórico das leituras em arquivo binário com índice de tempo em memória.
+ *
+ * Cada ciclo grava um registro de tamanho fixo [epochMillis][temperatura][presenca][luminosidade]
+ * no fim do arquivo. A cada BLOCK registros existe um resumo em memória (primeiro/último horário,
+ * min/max/soma por sensor), que serve de índice esparso: a consulta faz busca binária até o início
+ * do intervalo e usa os resumos dos blocos inteiros dentro de um bucket sem ler o disco; só os
+ * blocos que cruzam a borda de um bucket são lidos. O número de buckets é limitado, então a
+ * resposta tem tamanho fixo mesmo para 30 dias de dados.
+ */
+public class HistoryStore implements Closeable {
+
+    public static final String[] SENSORES = {"temperatura", "presenca", "luminosidade"};
+    public static final int MAX_BUCKETS = 1000;
+
+    private static final int RECORD = 8 + 8 * SENSORES.length;
+    private static final int BLOCK = 256; // registros por bloco do índice
+
+    /** Bucket do resultado: início do intervalo e min/média/máx das leituras dentro dele. */
+    public record Bucket(long start, double min, double avg, double max, long count) {}
+
+    private static final class Block {
+        final long firstRecord;
+        long firstTs;
+        long lastTs;
+        int count;
+        final double[] min = new double[SENSORES.length];
+        final double[] max = new double[SENSORES.length];
+        final double[] sum = new double[SENSORES.length];
+
+        Block(long firstRecord) {
+            this.firstRecord = firstRecord;
+        }
+
+        void add(long ts, double[] values) {
+            if (count == 0) firstTs = ts;
+            lastTs = ts;
+            for (int s = 0; s < values.length; s++) {
+                if (count == 0 || values[s] < min[s]) min[s] = values[s];
+                if (count == 0 || values[s] > max[s]) max[s] = values[s];
+                sum[s] += values[s];
+            }
+            count++;
+        }
+
+        Block copy() {
+            Block c = new Block(firstRecord);
+            c.firstTs = firstTs;
+            c.lastTs = lastTs;
+            c.count = count;
+            System.arraycopy(min, 0, c.min, 0, min.length);
+            System.arraycopy(max, 0, c.max, 0, max.length);
+            System.arraycopy(sum, 0, c.sum, 0, sum.length);
+            return c;
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<Block> blocks = new ArrayList<>();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD);
+    private long records;
+    private long lastTs = Long.MIN_VALUE;
+
+    public HistoryStore(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        rebuildIndex();
+    }
+
+    // Lê o arquivo uma vez na abertura para reconstruir os resumos (registro incompleto no fim é descartado)
+    private void rebuildIndex() throws IOException {
+        long complete = channel.size() / RECORD;
+        channel.truncate(complete * RECORD);
+        ByteBuffer buf = ByteBuffer.allocate(RECORD * BLOCK);
+        double[] values = new double[SENSORES.length];
+        long pos = 0;
+        while (pos < complete * RECORD) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+            buf.flip();
+            while (buf.remaining() >= RECORD) {
+                long ts = buf.getLong();
+                for (int s = 0; s < values.length; s++) values[s] = buf.getDouble();
+                index(ts, values);
+            }
+            pos += n - buf.remaining();
+        }
+    }
+
+    /** Grava uma leitura; valores na ordem de {@link #SENSORES}. Horários que voltam no tempo são ajustados. */
+    public synchronized void append(long epochMillis, double[] values) throws IOException {
+        long ts = Math.max(epochMillis, lastTs);
+        writeBuffer.clear();
+        writeBuffer.putLong(ts);
+        for (double v : values) writeBuffer.putDouble(v);
+        writeBuffer.flip();
+        long pos = records * RECORD;
+        while (writeBuffer.hasRemaining()) pos += channel.write(writeBuffer, pos);
+        index(ts, values);
+    }
+
+    private void index(long ts, double[] values) {
+        if (blocks.isEmpty() || blocks.get(blocks.size() - 1).count == BLOCK) blocks.add(new Block(records));
+        blocks.get(blocks.size() - 1).add(ts, values);
+        records++;
+        lastTs = ts;
+    }
+
+    public synchronized long size() {
+        return records;
+    }
+
+    public static int sensorIndex(String sensor) {
+        for (int i = 0; i < SENSORES.length; i++) if (SENSORES[i].equals(sensor)) return i;
+        return -1;
+    }
+
+    /** Passo efetivo: o pedido, aumentado se necessário para no máximo MAX_BUCKETS buckets. */
+    public static long effectiveStep(long from, long to, long step) {
+        long span = Math.max(1, to - from);
+        return Math.max(step, (span + MAX_BUCKETS - 1) / MAX_BUCKETS);
+    }
+
+    /** Buckets não vazios de [from, to] com largura {@code step} (ver {@link #effectiveStep}). */
+    public List<Bucket> query(int sensor, long from, long to, long step) throws IOException {
+        step = effectiveStep(from, to, step);
+        int nb = (int) ((to - from) / step) + 1;
+        double[] min = new double[nb];
+        double[] max = new double[nb];
+        double[] sum = new double[nb];
+        long[] count = new long[nb];
+
+        List<Block> snapshot = new ArrayList<>();
+        synchronized (this) {
+            int first = firstBlockEndingAtOrAfter(from);
+            for (int i = first; i < blocks.size() && blocks.get(i).firstTs <= to; i++) {
+                // blocos fechados não mudam mais; só o último (em escrita) é copiado
+                snapshot.add(i == blocks.size() - 1 ? blocks.get(i).copy() : blocks.get(i));
+            }
+        }
+
+        ByteBuffer buf = null;
+        for (Block block : snapshot) {
+            long b0 = (block.firstTs - from) / step;
+            if (block.firstTs >= from && block.lastTs <= to && b0 == (block.lastTs - from) / step) {
+                // bloco inteiro dentro de um bucket: só o resumo
+                int b = (int) b0;
+                add(min, max, sum, count, b, block.min[sensor], block.max[sensor], block.sum[sensor], block.count);
+                continue;
+            }
+            if (buf == null) buf = ByteBuffer.allocate(RECORD * BLOCK);
+            buf.clear().limit(RECORD * block.count);
+            long pos = block.firstRecord * RECORD;
+            while (buf.hasRemaining()) {
+                int n = channel.read(buf, pos + buf.position());
+                if (n < 0) break;
+            }
+            buf.flip();
+            while (buf.remaining() >= RECORD) {
+                int base = buf.position();
+                long ts = buf.getLong(base);
+                if (ts >= from && ts <= to) {
+                    double v = buf.getDouble(base + 8 + 8 * sensor);
+                    add(min, max, sum, count, (int) ((ts - from) / step), v, v, v, 1);
+                }
+                buf.position(base + RECORD);
+            }
+        }
+
+        List<Bucket> result = new ArrayList<>();
+        for (int b = 0; b < nb; b++) {
+            if (count[b] > 0) result.add(new Bucket(from + b * step, min[b], sum[b] / count[b], max[b], count[b]));
+        }
+        return result;
+    }
+
+    private static void add(double[] min, double[] max, double[] sum, long[] count, int b,
+                            double blockMin, double blockMax, double blockSum, long n) {
+        if (count[b] == 0 || blockMin < min[b]) min[b] = blockMin;
+        if (count[b] == 0 || blockMax > max[b]) max[b] = blockMax;
+        sum[b] += blockSum;
+        count[b] += n;
+    }
+
+    // busca binária no índice esparso: primeiro bloco cujo último horário é >= from
+    private int firstBlockEndingAtOrAfter(long from) {
+        int lo = 0, hi = blocks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blocks.get(mid).lastTs < from) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Escritor JSON em streaming: codifica UTF-8 direto em um buffer fixo de bytes que é
+ * descarregado no OutputStream (ex.: corpo chunked do HttpExchange) conforme enche.
+ * A resposta nunca é montada inteira em memória, então listagens grandes usam memória constante.
+ * Vírgulas são colocadas automaticamente e strings são escapadas.
+ *
+ *   w.beginObject().field("total", 3).name("itens").beginArray().value("a").endArray().endObject();
+ */
+public final class JsonWriter implements Closeable {
+
+    /** Corpo JSON escrito sob demanda (ex.: depois que o status HTTP já foi enviado). */
+    @FunctionalInterface
+    public interface Body {
+        void write(JsonWriter w) throws IOException;
+    }
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // maior escrita de tamanho fixo: os dígitos de um long (o buffer nunca pode ser menor)
+    private static final int LONG_DIGITS = 20;
+
+    private final OutputStream out;
+    private final byte[] buf;
+    private int pos;
+    private boolean[] hasElements = new boolean[16]; // por nível de aninhamento: precisa de vírgula?
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(OutputStream out) {
+        this(out, 8192);
+    }
+
+    public JsonWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buf = new byte[Math.max(bufferSize, LONG_DIGITS)];
+    }
+
+    /** Conveniência para quem precisa do JSON como String (ex.: eventos SSE). */
+    public static String toString(Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (JsonWriter w = new JsonWriter(bytes, 1024)) {
+            body.write(w);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream não lança
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        writeByte('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        writeByte('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separator();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) writeAscii("null");
+        else writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) writeAscii("null");
+        else if (value == (long) value && Math.abs(value) < 1e15) { writeLong((long) value); writeAscii(".0"); }
+        else writeAscii(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /** Number, Boolean, null ou qualquer outro objeto (escrito como string). */
+    public JsonWriter value(Object value) throws IOException {
+        if (value == null) return value((String) null);
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value(((Number) value).longValue());
+        }
+        if (value instanceof Number n) return value(n.doubleValue());
+        if (value instanceof Boolean b) return value(b.booleanValue());
+        return value(value.toString());
+    }
+
+    public JsonWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, double value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, Object value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    /** Descarrega o buffer e fecha o stream de saída. */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pos > 0) out.write(buf, 0, pos);
+            pos = 0;
+        } finally {
+            out.close();
+        }
+    }
+
+    private void push() {
+        if (++depth == hasElements.length) hasElements = Arrays.copyOf(hasElements, depth * 2);
+        hasElements[depth] = false;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) afterName = false;
+        else separator();
+    }
+
+    private void separator() throws IOException {
+        if (hasElements[depth]) writeByte(',');
+        hasElements[depth] = true;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = (byte) b;
+    }
+
+    private void drain() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+
+    private void writeAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) writeByte(s.charAt(i));
+    }
+
+    private void writeLong(long v) throws IOException {
+        if (v == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        if (v < 0) {
+            writeByte('-');
+            v = -v;
+        }
+        if (pos + LONG_DIGITS > buf.length) drain();
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    // string JSON escapada, codificada em UTF-8 sem criar byte[] intermediário
+    private void writeString(String s) throws IOException {
+        writeByte('"');
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            // caminho rápido: trecho ASCII sem escape copiado direto para o buffer
+            if (pos == buf.length) drain();
+            int limit = Math.min(len, i + buf.length - pos);
+            byte[] b = buf;
+            int p = pos;
+            while (i < limit) {
+                char c = s.charAt(i);
+                if (c < 0x20 || c >= 0x80 || c == '"' || c == '\\') break;
+                b[p++] = (byte) c;
+                i++;
+            }
+            pos = p;
+            if (i < limit) i = writeSpecial(s, i);
+        }
+        writeByte('"');
+    }
+
+    // escape ou caractere não-ASCII em s[i]; retorna o próximo índice
+    private int writeSpecial(String s, int i) throws IOException {
+        char c = s.charAt(i);
+        if (c < 0x80) {
+            switch (c) {
+                case '"' -> { writeByte('\\'); writeByte('"'); }
+                case '\\' -> { writeByte('\\'); writeByte('\\'); }
+                case '\n' -> { writeByte('\\'); writeByte('n'); }
+                case '\r' -> { writeByte('\\'); writeByte('r'); }
+                case '\t' -> { writeByte('\\'); writeByte('t'); }
+                default -> {
+                    writeAscii("\\u00");
+                    writeByte(HEX[c >> 4]);
+                    writeByte(HEX[c & 0xF]);
+                }
+            }
+        } else if (c < 0x800) {
+            writeByte(0xC0 | (c >> 6));
+            writeByte(0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            writeByte(0xF0 | (cp >> 18));
+            writeByte(0x80 | ((cp >> 12) & 0x3F));
+            writeByte(0x80 | ((cp >> 6) & 0x3F));
+            writeByte(0x80 | (cp & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            writeByte('?'); // surrogate isolado não é UTF-8 válido
+        } else {
+            writeByte(0xE0 | (c >> 12));
+            writeByte(0x80 | ((c >> 6) & 0x3F));
+            writeByte(0x80 | (c & 0x3F));
+        }
+        return i + 1;
+    }
+}
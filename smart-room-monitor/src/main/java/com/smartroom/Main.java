@@ -1,12 +1,29 @@
 import java.io.*;
 import java.net.InetSocketAddress;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.sun.net.httpserver.Filter;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 
+/**
+ * Configuração do servidor HTTP por propriedades do sistema (-D):
+ *   smartroom.http.executor     virtual (padrão, uma virtual thread por requisição) ou pool
+ *   smartroom.http.threads      tamanho do pool quando executor=pool (padrão: 2 x núcleos)
+ *   smartroom.http.backlog      fila de conexões TCP pendentes (padrão 128)
+ *   smartroom.http.maxInFlight  requisições simultâneas antes de responder 503 (padrão 256)
+ *   smartroom.http.limits       limites por endpoint, ex.: /api/sensors=8,/api/report=2
+ *   smartroom.assets.watch      true para recarregar arquivos estáticos alterados
+ *   smartroom.actions.capacity  ações mantidas em memória no log (padrão 1024)
+ *   smartroom.actions.spill     arquivo onde gravar as ações descartadas do log (padrão: nenhum)
+ *   smartroom.metrics           false para desligar /api/metrics e toda a medição de latência
+ *   smartroom.actuators.holdMs  tempo mínimo entre trocas automáticas de luz/ventilador (padrão 15000)
+ */
 public class Main {
     
     private static final int PORT = 8080;
@@ -18,25 +35,48 @@ public class Main {
             // Inicializar o sistema Smart Room (GOD OBJECT)
             smartRoomSystem = new SmartRoomSystem();
             
-            // Criar servidor HTTP
-            HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+            // Criar servidor HTTP (sem executor o HttpServer atende tudo em uma única thread)
+            HttpServer server = HttpServer.create(new InetSocketAddress(PORT), Integer.getInteger("smartroom.http.backlog", 128));
+            ExecutorService executor = createExecutor(System.getProperty("smartroom.http.executor", "virtual"));
+            server.setExecutor(executor);
+            AdmissionFilter admission = new AdmissionFilter(
+                    Integer.getInteger("smartroom.http.maxInFlight", 256),
+                    System.getProperty("smartroom.http.limits", ""), 1);
             
-            // Configurar contextos
-            server.createContext("/", new StaticFileHandler());
-            server.createContext("/api/", smartRoomSystem);
+            // Arquivos estáticos em memória (recarregados ao mudar se smartroom.assets.watch=true)
+            StaticAssetCache assets = new StaticAssetCache(Paths.get(WEBAPP_DIR));
+            if (Boolean.getBoolean("smartroom.assets.watch")) {
+                assets.startWatching();
+            }
+            
+            // Configurar contextos (a medição vem antes da admissão, para contar também os 503)
+            List<Filter> filters = new ArrayList<>();
+            if (Metrics.ENABLED) {
+                filters.add(new MetricsFilter());
+                registerGauges(admission);
+            }
+            filters.add(admission);
+            server.createContext("/", new StaticFileHandler(assets)).getFilters().addAll(filters);
+            server.createContext("/api/", smartRoomSystem).getFilters().addAll(filters);
+            server.createContext("/api/stream", smartRoomSystem.getEventStream()).getFilters().addAll(filters); // SSE
+            if (Metrics.ENABLED) {
+                server.createContext("/api/metrics", Metrics::handle).getFilters().addAll(filters);
+            }
             
             // Shutdown hook
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("\n🔴 Parando servidor...");
                 smartRoomSystem.shutdown();
                 server.stop(2);
+                executor.shutdown();
             }));
             
             // Iniciar servidor
             server.start();
             
-            System.out.println("🌐 Servidor rodando em: http://localhost:" + PORT);
-            System.out.println("📁 Arquivos em: " + WEBAPP_DIR);
+            System.out.println("🌐 Servidor rodando em: http://localhost:" + PORT
+                    + " (executor: " + System.getProperty("smartroom.http.executor", "virtual") + ")");
+            System.out.println("📁 Arquivos em: " + WEBAPP_DIR + " (" + assets.size() + " em cache)");
             System.out.println("🔧 Para parar: Ctrl+C");
             
         } catch (Exception e) {
@@ -45,74 +85,131 @@ public class Main {
         }
     }
     
+    private static void registerGauges(AdmissionFilter admission) {
+        Metrics.gauge("smartroom_http_in_flight", "Requisições HTTP em processamento.", admission::inFlight);
+        Metrics.counter("smartroom_http_rejected_total", "Requisições recusadas com 503 pelo controle de admissão.", admission::rejectedCount);
+        Metrics.gauge("smartroom_sse_clients", "Clientes conectados em /api/stream.", () -> smartRoomSystem.getEventStream().clientCount());
+        Metrics.gauge("smartroom_sensors", "Sensores cadastrados.", () -> SmartRoomSystem.sensors.size());
+        Metrics.counter("smartroom_actions_total", "Ações registradas no log desde o início.", () -> SmartRoomSystem.actionLog.lastSeq());
+    }
+    
+    private static ExecutorService createExecutor(String mode) {
+        if (mode.equals("virtual")) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        if (mode.equals("pool")) {
+            int threads = Integer.getInteger("smartroom.http.threads", 2 * Runtime.getRuntime().availableProcessors());
+            return Executors.newFixedThreadPool(threads);
+        }
+        throw new IllegalArgumentException("smartroom.http.executor inválido: " + mode + " (use virtual ou pool)");
+    }
+    
     /**
-     * Handler simples para arquivos estáticos
+     * Handler para arquivos estáticos, servidos da memória (StaticAssetCache)
+     * com ETag/304, Cache-Control e gzip conforme o Accept-Encoding.
      */
     static class StaticFileHandler implements HttpHandler {
         
+        private final StaticAssetCache assets;
+        
+        StaticFileHandler(StaticAssetCache assets) {
+            this.assets = assets;
+        }
+        
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             String requestPath = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
             
             // Redirecionar raiz para index.html
             if ("/".equals(requestPath)) {
                 requestPath = "/index.html";
             }
             
-            // Caminho do arquivo
-            String filePath = WEBAPP_DIR + requestPath;
-            Path path = Paths.get(filePath);
-            
             try {
-                if (Files.exists(path) && !Files.isDirectory(path)) {
-                    // Arquivo encontrado
-                    byte[] content = Files.readAllBytes(path);
-                    String contentType = getContentType(filePath);
-                    
-                    exchange.getResponseHeaders().set("Content-Type", contentType);
-                    exchange.sendResponseHeaders(200, content.length);
-                    
-                    OutputStream os = exchange.getResponseBody();
-                    os.write(content);
-                    os.close();
-                    
-                } else {
+                StaticAssetCache.Asset asset = assets.get(requestPath);
+                if (asset == null) {
                     // 404 - Não encontrado
                     String notFound = "<html><body><h1>404 - Não encontrado</h1>" +
                                     "<p>Arquivo: " + requestPath + "</p>" +
                                     "<a href='/'>Voltar</a></body></html>";
-                    
-                    exchange.getResponseHeaders().set("Content-Type", "text/html");
-                    exchange.sendResponseHeaders(404, notFound.getBytes().length);
-                    
-                    OutputStream os = exchange.getResponseBody();
-                    os.write(notFound.getBytes());
-                    os.close();
+                    send(exchange, 404, "text/html; charset=utf-8", notFound.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                if (!method.equals("GET") && !method.equals("HEAD")) {
+                    exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                    exchange.sendResponseHeaders(405, -1);
+                    exchange.close();
+                    return;
                 }
                 
+                boolean gzip = asset.gzip() != null && acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+                exchange.getResponseHeaders().set("ETag", asset.etag(gzip));
+                exchange.getResponseHeaders().set("Cache-Control", cacheControl(requestPath));
+                exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+                
+                // Requisição condicional: o navegador já tem esta versão
+                if (asset.matches(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                
+                byte[] body = gzip ? asset.gzip() : asset.identity();
+                if (gzip) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                if (method.equals("HEAD")) {
+                    exchange.getResponseHeaders().set("Content-Type", asset.contentType());
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+                    exchange.sendResponseHeaders(200, -1);
+                    exchange.close();
+                    return;
+                }
+                send(exchange, 200, asset.contentType(), body);
+                
             } catch (Exception e) {
                 // Erro interno
                 String error = "<html><body><h1>500 - Erro interno</h1>" +
                              "<p>" + e.getMessage() + "</p></body></html>";
-                
-                exchange.getResponseHeaders().set("Content-Type", "text/html");
-                exchange.sendResponseHeaders(500, error.getBytes().length);
-                
-                OutputStream os = exchange.getResponseBody();
-                os.write(error.getBytes());
-                os.close();
+                send(exchange, 500, "text/html; charset=utf-8", error.getBytes(StandardCharsets.UTF_8));
             }
         }
         
-        private String getContentType(String filePath) {
-            if (filePath.endsWith(".html")) return "text/html";
-            if (filePath.endsWith(".css")) return "text/css";
-            if (filePath.endsWith(".js")) return "application/javascript";
-            if (filePath.endsWith(".json")) return "application/json";
-            if (filePath.endsWith(".png")) return "image/png";
-            if (filePath.endsWith(".jpg") || filePath.endsWith(".jpeg")) return "image/jpeg";
-            if (filePath.endsWith(".ico")) return "image/x-icon";
-            return "text/plain";
+        private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, body.length);
+            
+            OutputStream os = exchange.getResponseBody();
+            os.write(body);
+            os.close();
+        }
+        
+        // HTML sempre revalida (ETag -> 304); js/css podem ficar alguns minutos no cache do navegador
+        private String cacheControl(String path) {
+            return path.endsWith(".html") ? "no-cache" : "public, max-age=300";
+        }
+        
+        // "gzip" presente no Accept-Encoding e sem q=0
+        static boolean acceptsGzip(String acceptEncoding) {
+            if (acceptEncoding == null) return false;
+            for (String part : acceptEncoding.split(",")) {
+                String[] tokens = part.trim().split(";");
+                String coding = tokens[0].trim();
+                if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) continue;
+                for (int i = 1; i < tokens.length; i++) {
+                    String param = tokens[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            if (Double.parseDouble(param.substring(2)) == 0) return false;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+            return false;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Métricas do processo no formato texto do Prometheus, servidas em GET /api/metrics:
+ * histogramas de latência (como summary, em segundos), contadores e gauges.
+ *
+ * Os pontos de medição são escritos como {@code if (Metrics.ENABLED) ...}: com
+ * -Dsmartroom.metrics=false a flag é constante e o JIT remove a medição por completo
+ * (o Main também deixa de registrar o filtro e o endpoint).
+ */
+public class Metrics {
+
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("smartroom.metrics"));
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    // séries de uma métrica, indexadas pelos labels já formatados (ex.: stage="collect")
+    private record Family(String type, String help, Map<String, Object> series) {}
+
+    /** Histograma de {@code name} com os labels dados (ver {@link #labels}), criado no primeiro uso. */
+    public static LatencyHistogram histogram(String name, String help, String labels) {
+        return (LatencyHistogram) family(name, "summary", help).series().computeIfAbsent(labels, l -> new LatencyHistogram());
+    }
+
+    public static LongAdder counter(String name, String help, String labels) {
+        return (LongAdder) family(name, "counter", help).series().computeIfAbsent(labels, l -> new LongAdder());
+    }
+
+    /** Contador mantido por outra classe, lido na hora da coleta. */
+    public static void counter(String name, String help, LongSupplier value) {
+        family(name, "counter", help).series().put("", value);
+    }
+
+    /** Valor lido na hora da coleta (ex.: clientes SSE conectados). */
+    public static void gauge(String name, String help, LongSupplier value) {
+        family(name, "gauge", help).series().put("", value);
+    }
+
+    private static Family family(String name, String type, String help) {
+        return FAMILIES.computeIfAbsent(name, n -> new Family(type, help, new ConcurrentSkipListMap<>()));
+    }
+
+    /** Grava o tempo desde {@code startNanos} e devolve o instante atual, para medir etapas seguidas. */
+    public static long lap(LatencyHistogram histogram, long startNanos) {
+        long now = System.nanoTime();
+        histogram.record(now - startNanos);
+        return now;
+    }
+
+    /** Formata pares nome/valor como labels do Prometheus: labels("stage", "collect") = stage="collect". */
+    public static String labels(String... pairs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(pairs[i]).append("=\"")
+                    .append(pairs[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return sb.toString();
+    }
+
+    /** Formato de exposição texto do Prometheus (versão 0.0.4). */
+    public static String render() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Family> f : FAMILIES.entrySet()) {
+            String name = f.getKey();
+            Family family = f.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(family.type()).append('\n');
+            for (Map.Entry<String, Object> s : family.series().entrySet()) {
+                String labels = s.getKey();
+                if (s.getValue() instanceof LatencyHistogram h) {
+                    LatencyHistogram.Snapshot snap = h.snapshot();
+                    String prefix = labels.isEmpty() ? "" : labels + ",";
+                    for (double q : QUANTILES) {
+                        sb.append(name).append('{').append(prefix).append("quantile=\"").append(q).append("\"} ")
+                                .append(seconds(snap.quantile(q))).append('\n');
+                    }
+                    sb.append(name).append("_sum").append(braces(labels)).append(' ').append(seconds(snap.sumNanos())).append('\n');
+                    sb.append(name).append("_count").append(braces(labels)).append(' ').append(snap.count()).append('\n');
+                } else if (s.getValue() instanceof LongAdder c) {
+                    sb.append(name).append(braces(labels)).append(' ').append(c.sum()).append('\n');
+                } else if (s.getValue() instanceof LongSupplier g) {
+                    sb.append(name).append(braces(labels)).append(' ').append(g.getAsLong()).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    /** Handler de GET /api/metrics. */
+    public static void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
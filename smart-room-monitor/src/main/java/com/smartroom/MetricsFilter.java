@@ -0,0 +1,47 @@
+import java.io.IOException;
+import java.util.Set;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Mede cada requisição HTTP: latência por endpoint e método (smartroom_http_request_seconds)
+ * e total por endpoint, método e status (smartroom_http_requests_total, base do throughput).
+ * O caminho é normalizado para um conjunto fixo de endpoints, para o número de séries não
+ * crescer com IDs ou URLs inválidas. /api/stream só é contado: a "latência" seria a conexão inteira.
+ */
+public class MetricsFilter extends Filter {
+
+    private static final Set<String> ENDPOINTS = Set.of(
+            "/api/sensors", "/api/data", "/api/actions", "/api/report", "/api/devices",
+            "/api/history", "/api/stream", "/api/metrics");
+    private static final Set<String> METHODS = Set.of("GET", "HEAD", "POST", "DELETE", "OPTIONS");
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            String endpoint = endpoint(exchange.getRequestURI().getPath());
+            String method = METHODS.contains(exchange.getRequestMethod()) ? exchange.getRequestMethod() : "other";
+            if (!endpoint.equals("/api/stream")) {
+                Metrics.histogram("smartroom_http_request_seconds", "Latência das requisições HTTP por endpoint.",
+                        Metrics.labels("endpoint", endpoint, "method", method)).record(System.nanoTime() - start);
+            }
+            Metrics.counter("smartroom_http_requests_total", "Requisições HTTP atendidas por endpoint e status.",
+                    Metrics.labels("endpoint", endpoint, "method", method, "status", String.valueOf(exchange.getResponseCode()))).increment();
+        }
+    }
+
+    static String endpoint(String path) {
+        if (ENDPOINTS.contains(path)) return path;
+        if (path.startsWith("/api/sensor/")) return "/api/sensor/{id}";
+        if (path.startsWith("/api/")) return "/api/other";
+        return "static";
+    }
+
+    @Override
+    public String description() {
+        return "Latência e contagem de requisições por endpoint (/api/metrics)";
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Estado da sala publicado a cada ciclo de coleta: leituras, atuadores e contador de ciclos.
+ *
+ * Imutável: o SmartRoomSystem monta um novo RoomState e o publica numa única referência
+ * volatile. Quem atende a API lê essa referência uma vez e escreve a resposta inteira a partir
+ * dela, sem locks e sem misturar valores de dois ciclos (temperatura de um, atuadores de outro).
+ */
+public record RoomState(double temperatura, boolean presenca, int luminosidade,
+                        boolean lightStatus, boolean fanStatus, int processCount, long atualizadoEm) {
+
+    /** Valores exibidos antes da primeira coleta. */
+    public static RoomState inicial() {
+        return new RoomState(22.5, false, 450, false, false, 0, System.currentTimeMillis());
+    }
+
+    public RoomState comLeituras(double temperatura, boolean presenca, int luminosidade, long agora) {
+        return new RoomState(temperatura, presenca, luminosidade, lightStatus, fanStatus, processCount, agora);
+    }
+
+    public RoomState comLuz(boolean ligada) {
+        return ligada == lightStatus ? this
+                : new RoomState(temperatura, presenca, luminosidade, ligada, fanStatus, processCount, atualizadoEm);
+    }
+
+    public RoomState comVentilador(boolean ligado) {
+        return ligado == fanStatus ? this
+                : new RoomState(temperatura, presenca, luminosidade, lightStatus, ligado, processCount, atualizadoEm);
+    }
+
+    public RoomState proximoCiclo() {
+        return new RoomState(temperatura, presenca, luminosidade, lightStatus, fanStatus, processCount + 1, atualizadoEm);
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.Arrays;
+
+/**
+ * Estatísticas de uma leitura atualizadas em O(1) a cada amostra, sem guardar o histórico:
+ * mínimo, máximo, média e variância (método de Welford) e percentis aproximados por um
+ * sketch de buckets logarítmicos (erro relativo de 1%, estilo DDSketch).
+ * Duas instâncias podem ser combinadas com {@link #merge} (ex.: várias salas).
+ * Métodos sincronizados: o Timer atualiza enquanto as threads HTTP leem.
+ */
+public class RunningStats {
+
+    private static final double ACCURACY = 0.01;
+    private static final double GAMMA = (1 + ACCURACY) / (1 - ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    // sketch: buckets [offset, offset + length) para |x| > 0, separados por sinal
+    private long[] positive = new long[0];
+    private int positiveOffset;
+    private long[] negative = new long[0];
+    private int negativeOffset;
+    private long zeros;
+
+    public synchronized void add(double value) {
+        if (Double.isNaN(value)) return;
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) min = value;
+        if (value > max) max = value;
+
+        if (value > MIN_INDEXABLE) addPositive(index(value), 1);
+        else if (value < -MIN_INDEXABLE) addNegative(index(-value), 1);
+        else zeros++;
+    }
+
+    /** Soma as amostras de outra instância nesta (variância combinada de Chan et al.). */
+    public void merge(RunningStats other) {
+        RunningStats o = other.copy();
+        synchronized (this) {
+            if (o.count == 0) return;
+            if (count == 0) {
+                mean = o.mean;
+                m2 = o.m2;
+            } else {
+                long n = count + o.count;
+                double delta = o.mean - mean;
+                mean += delta * o.count / n;
+                m2 += o.m2 + delta * delta * ((double) count * o.count / n);
+            }
+            count += o.count;
+            min = Math.min(min, o.min);
+            max = Math.max(max, o.max);
+            for (int i = 0; i < o.positive.length; i++) if (o.positive[i] != 0) addPositive(o.positiveOffset + i, o.positive[i]);
+            for (int i = 0; i < o.negative.length; i++) if (o.negative[i] != 0) addNegative(o.negativeOffset + i, o.negative[i]);
+            zeros += o.zeros;
+        }
+    }
+
+    public synchronized RunningStats copy() {
+        RunningStats c = new RunningStats();
+        c.count = count;
+        c.mean = mean;
+        c.m2 = m2;
+        c.min = min;
+        c.max = max;
+        c.positive = positive.clone();
+        c.positiveOffset = positiveOffset;
+        c.negative = negative.clone();
+        c.negativeOffset = negativeOffset;
+        c.zeros = zeros;
+        return c;
+    }
+
+    public synchronized long count() { return count; }
+    public synchronized double mean() { return count == 0 ? Double.NaN : mean; }
+    public synchronized double min() { return count == 0 ? Double.NaN : min; }
+    public synchronized double max() { return count == 0 ? Double.NaN : max; }
+
+    public synchronized double variance() {
+        return count < 2 ? 0.0 : m2 / (count - 1);
+    }
+
+    public double stddev() {
+        return Math.sqrt(variance());
+    }
+
+    /** Percentil aproximado (q entre 0 e 1); custo depende só do número de buckets. */
+    public synchronized double quantile(double q) {
+        if (count == 0) return Double.NaN;
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        long rank = (long) Math.floor(q * (count - 1));
+        long seen = 0;
+        double result = max;
+        boolean found = false;
+        for (int i = negative.length - 1; i >= 0 && !found; i--) {
+            seen += negative[i];
+            if (seen > rank) { result = -value(negativeOffset + i); found = true; }
+        }
+        if (!found) {
+            seen += zeros;
+            if (seen > rank) { result = 0.0; found = true; }
+        }
+        for (int i = 0; i < positive.length && !found; i++) {
+            seen += positive[i];
+            if (seen > rank) { result = value(positiveOffset + i); found = true; }
+        }
+        return Math.max(min, Math.min(max, result));
+    }
+
+    private static int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    private void addPositive(int index, long n) {
+        if (positive.length == 0 || index < positiveOffset || index >= positiveOffset + positive.length) {
+            positiveOffset = grow(true, index);
+        }
+        positive[index - positiveOffset] += n;
+    }
+
+    private void addNegative(int index, long n) {
+        if (negative.length == 0 || index < negativeOffset || index >= negativeOffset + negative.length) {
+            negativeOffset = grow(false, index);
+        }
+        negative[index - negativeOffset] += n;
+    }
+
+    // amplia o vetor de buckets para cobrir index, com folga dos dois lados; retorna o novo offset
+    private int grow(boolean pos, int index) {
+        long[] counts = pos ? positive : negative;
+        int offset = pos ? positiveOffset : negativeOffset;
+        int lo = counts.length == 0 ? index : Math.min(offset, index);
+        int hi = counts.length == 0 ? index : Math.max(offset + counts.length - 1, index);
+        int size = Math.max(hi - lo + 1, 8) * 2;
+        int newOffset = lo - (size - (hi - lo + 1)) / 2;
+        long[] grown = new long[size];
+        if (counts.length > 0) System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        if (pos) positive = grown; else negative = grown;
+        return newOffset;
+    }
+
+    public synchronized void clear() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        Arrays.fill(positive, 0);
+        Arrays.fill(negative, 0);
+        zeros = 0;
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cadastro de sensores indexado (substitui a List<String> "ID|nome|tipo|valor|ativo").
+ *
+ * - byId: ConcurrentHashMap, busca/cadastro/remoção em O(1) sem split() de nenhuma entrada.
+ *   Cadastro e remoção rodam dentro de byId.compute/computeIfPresent daquele ID: a checagem de
+ *   ID duplicado é atômica e os índices secundários são atualizados sob o mesmo lock, então um
+ *   remove concorrente com o add do mesmo ID nunca deixa o sensor órfão em ordered/byTipo.
+ * - ordem de cadastro: índice por número de sequência, para a listagem continuar na ordem em
+ *   que os sensores foram cadastrados (como na lista antiga) sem reordenar a cada chamada.
+ * - byTipo: índice secundário por tipo, também na ordem de cadastro.
+ *
+ * A listagem percorre os registros já tipados; iteração é fracamente consistente
+ * (não bloqueia cadastros/remoções concorrentes).
+ *
+ * Um Listener opcional recebe cada cadastro/remoção ainda dentro do lock do ID: para um mesmo
+ * sensor, os avisos saem na ordem em que as operações aconteceram (usado pelo /api/stream).
+ */
+public class SensorRegistry {
+
+    public record Sensor(String id, String nome, String tipo, String valor, boolean ativo, long seq) {
+
+        /** Linha no formato do arquivo de dados: ID|nome|tipo|valor|ativo */
+        public String toLine() {
+            return id + "|" + nome + "|" + tipo + "|" + valor + "|" + ativo;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Sensor> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Sensor> ordered = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, Sensor>> byTipo = new ConcurrentHashMap<>();
+    private final AtomicLong nextSeq = new AtomicLong();
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile Listener listener;
+
+    /** Avisado de cada cadastro/remoção; roda dentro do lock do ID, então deve ser rápido. */
+    public interface Listener {
+        void added(Sensor sensor);
+        void removed(Sensor sensor);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Cadastra o sensor; retorna null se o ID já existir. */
+    public Sensor add(String id, String nome, String tipo, String valor, boolean ativo) {
+        Sensor sensor = new Sensor(id, nome, tipo, valor, ativo, nextSeq.incrementAndGet());
+        Sensor current = byId.compute(id, (key, existing) -> {
+            if (existing != null) return existing;
+            ordered.put(sensor.seq(), sensor);
+            byTipo.computeIfAbsent(tipo, t -> new ConcurrentSkipListMap<>()).put(sensor.seq(), sensor);
+            Listener l = listener;
+            if (l != null) l.added(sensor);
+            return sensor;
+        });
+        if (current != sensor) return null;
+        version.incrementAndGet();
+        return sensor;
+    }
+
+    /** Lê uma linha ID|nome|tipo|valor|ativo; retorna null se a linha for inválida ou o ID repetido. */
+    public Sensor addLine(String line) {
+        String[] parts = line.split("\\|");
+        if (parts.length < 5) return null;
+        return add(parts[0], parts[1], parts[2], parts[3], Boolean.parseBoolean(parts[4]));
+    }
+
+    public Sensor remove(String id) {
+        Sensor[] removed = new Sensor[1];
+        byId.computeIfPresent(id, (key, sensor) -> {
+            ordered.remove(sensor.seq());
+            ConcurrentSkipListMap<Long, Sensor> tipo = byTipo.get(sensor.tipo());
+            if (tipo != null) tipo.remove(sensor.seq());
+            Listener l = listener;
+            if (l != null) l.removed(sensor);
+            removed[0] = sensor;
+            return null;
+        });
+        if (removed[0] != null) version.incrementAndGet();
+        return removed[0];
+    }
+
+    public Sensor get(String id) {
+        return byId.get(id);
+    }
+
+    public boolean contains(String id) {
+        return byId.containsKey(id);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /** Todos os sensores, na ordem de cadastro. */
+    public Collection<Sensor> all() {
+        return Collections.unmodifiableCollection(ordered.values());
+    }
+
+    /** Sensores de um tipo, na ordem de cadastro. */
+    public Collection<Sensor> byTipo(String tipo) {
+        ConcurrentSkipListMap<Long, Sensor> sensors = byTipo.get(tipo);
+        return sensors == null ? Collections.emptyList() : Collections.unmodifiableCollection(sensors.values());
+    }
+
+    /** Incrementado a cada cadastro/remoção (usado para saber se a lista mudou). */
+    public int version() {
+        return version.get();
+    }
+
+    // remove um a um, pelo mesmo caminho atômico, para não competir com um add em andamento
+    public void clear() {
+        for (String id : byId.keySet()) remove(id);
+        version.incrementAndGet();
+    }
+}
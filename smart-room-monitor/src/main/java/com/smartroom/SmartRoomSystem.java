@@ -1,4 +1,6 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import com.sun.net.httpserver.HttpHandler;
@@ -21,17 +23,26 @@ public class SmartRoomSystem implements HttpHandler {
     // ANTI-PATTERN: Magic Numbers espalhados
     private static final int MAX_TEMP = 30;
     private static final int MIN_TEMP = 18;
+    private static final int LUX_ACENDER = 300;
+    private static final int LUX_HISTERESE = 50;
+    private static final long ACTUATOR_HOLD_MS = Long.getLong("smartroom.actuators.holdMs", 15000);
     private static final String DATA_FILE = "smart-room-monitor/data/sensors.txt";
     private static final String REPORT_FILE = "smart-room-monitor/data/reports.txt";
+    private static final String HISTORY_FILE = "smart-room-monitor/data/history.bin";
+    private static final String CHECKPOINT_FILE = "smart-room-monitor/data/checkpoint.bin";
     
     // ANTI-PATTERN: Variáveis globais públicas sem encapsulamento
-    public static List<String> sensorsData = new ArrayList<>();
-    public static Map<String, Object> currentValues = new HashMap<>();
-    public static List<String> actionLog = new ArrayList<>();
-    public static boolean lightStatus = false;
-    public static boolean fanStatus = false;
-    public static int sensorCount = 0;
-    public static int processCount = 0;
+    public static SensorRegistry sensors = new SensorRegistry();
+    // Leituras, atuadores e ciclos: um RoomState imutável por publicação; a API só lê a referência
+    public static volatile RoomState state = RoomState.inicial();
+    // Buffer circular de tamanho fixo (timer + threads HTTP); ver ActionLog
+    public static ActionLog actionLog = new ActionLog(Integer.getInteger("smartroom.actions.capacity", 1024),
+            System.getProperty("smartroom.actions.spill") == null ? null : Path.of(System.getProperty("smartroom.actions.spill")));
+    // Quem troca o estado (ciclo do Timer, comandos da API) passa por aqui, um de cada vez
+    private static final Object STATE_LOCK = new Object();
+    public static long lightChangedAt = Long.MIN_VALUE / 2, fanChangedAt = Long.MIN_VALUE / 2;
+    // Estado que a regra antiga (sem histerese nem tempo mínimo) teria produzido; com STATE_LOCK
+    private static boolean lightShadow, fanShadow;
     public static String lastError = "";
     public static Timer timer;
     
@@ -40,6 +51,37 @@ public class SmartRoomSystem implements HttpHandler {
     public static String deprecatedConfig = "old_config_value";
     public static int unusedCounter = 0;
     
+    // Agregados incrementais (O(1) por leitura), usados no relatório e em /api/report
+    public static RunningStats temperaturaStats = new RunningStats();
+    public static RunningStats presencaStats = new RunningStats();
+    public static RunningStats luminosidadeStats = new RunningStats();
+    public static DutyCycle luzDuty = new DutyCycle();
+    public static DutyCycle ventiladorDuty = new DutyCycle();
+    
+    // Série histórica para /api/history (null se o arquivo não pôde ser aberto)
+    public static HistoryStore history;
+    
+    // Duração de cada etapa do ciclo do Timer (/api/metrics)
+    private static final String STAGE_METRIC = "smartroom_cycle_stage_seconds";
+    private static final String STAGE_HELP = "Duração de cada etapa do ciclo de coleta (Timer).";
+    private static final LatencyHistogram STAGE_COLLECT = Metrics.histogram(STAGE_METRIC, STAGE_HELP, Metrics.labels("stage", "collect"));
+    private static final LatencyHistogram STAGE_ACTIONS = Metrics.histogram(STAGE_METRIC, STAGE_HELP, Metrics.labels("stage", "actions"));
+    private static final LatencyHistogram STAGE_STATS = Metrics.histogram(STAGE_METRIC, STAGE_HELP, Metrics.labels("stage", "stats"));
+    private static final LatencyHistogram STAGE_SAVE = Metrics.histogram(STAGE_METRIC, STAGE_HELP, Metrics.labels("stage", "save"));
+    private static final LatencyHistogram STAGE_REPORT = Metrics.histogram(STAGE_METRIC, STAGE_HELP, Metrics.labels("stage", "report"));
+    private static final LatencyHistogram STAGE_PUBLISH = Metrics.histogram(STAGE_METRIC, STAGE_HELP, Metrics.labels("stage", "publish"));
+    private static final LatencyHistogram STAGE_TOTAL = Metrics.histogram(STAGE_METRIC, STAGE_HELP, Metrics.labels("stage", "total"));
+    
+    // Server-Sent Events (/api/stream): só o que mudou desde a última publicação é enviado
+    private final EventStream eventStream = new EventStream(this::streamSnapshot);
+    private RoomState published;
+    private long publishedActions, publishedActionsCount = -1;
+    
+    // Estado gravado no último checkpoint (só regrava quando algo mudou)
+    private int checkpointVersion = -1;
+    private long checkpointSeq = -1;
+    private boolean checkpointLight, checkpointFan;
+    
     // ANTI-PATTERN: Construtor GOD fazendo TUDO
     public SmartRoomSystem() {
         System.out.println("=== SMART ROOM MONITOR SYSTEM ===");
@@ -47,16 +89,36 @@ public class SmartRoomSystem implements HttpHandler {
         // Criar diretório
         new File("smart-room-monitor/data").mkdirs();
         
-        // Inicializar valores
-        currentValues.put("temperatura", 22.5);
-        currentValues.put("presenca", false);
-        currentValues.put("luminosidade", 450);
+        try {
+            history = new HistoryStore(Path.of(HISTORY_FILE));
+        } catch (IOException e) {
+            System.out.println("❌ Erro ao abrir histórico: " + e.getMessage());
+        }
+        
+        // Carregar dados: checkpoint binário; sem ele, o sensors.txt; sem nenhum dos dois, os sensores padrão
+        if (!loadCheckpoint()) {
+            if (new File(DATA_FILE).exists()) {
+                loadDataFromFile();
+            } else {
+                setupDefaultSensors();
+            }
+        }
         
-        // Setup sensores padrão
-        setupDefaultSensors();
+        // Cadastro/remoção vão para /api/stream como delta; a lista inteira só no snapshot
+        sensors.setListener(new SensorRegistry.Listener() {
+            @Override
+            public void added(SensorRegistry.Sensor sensor) {
+                publishSensorChange("sensor-added", sensor);
+            }
+            
+            @Override
+            public void removed(SensorRegistry.Sensor sensor) {
+                publishSensorChange("sensor-removed", sensor);
+            }
+        });
         
-        // Carregar dados
-        loadDataFromFile();
+        // Estado inicial publicado (snapshot de quem conecta em /api/stream)
+        publishChanges();
         
         // Iniciar timer
         startDataCollection();
@@ -65,69 +127,52 @@ public class SmartRoomSystem implements HttpHandler {
     }
     
     // ANTI-PATTERN: Método para deletar sensor com lógica ineficiente
-    private String handleDeleteSensor(String sensorId) {
+    private JsonWriter.Body handleDeleteSensor(String sensorId) {
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-            String timestamp = sdf.format(new Date());
-            
-            // Procurar sensor pelo ID (INEFICIENTE)
-            String sensorToRemove = null;
-            String sensorName = "";
+            SensorRegistry.Sensor removed = sensors.remove(sensorId);
             
-            for (String sensor : sensorsData) {
-                String[] parts = sensor.split("\\|");
-                if (parts.length > 0 && parts[0].equals(sensorId)) {
-                    sensorToRemove = sensor;
-                    if (parts.length > 1) {
-                        sensorName = parts[1];
-                    }
-                    break;
-                }
-            }
-            
-            if (sensorToRemove != null) {
-                sensorsData.remove(sensorToRemove);
-                sensorCount--;
+            if (removed != null) {
+                String sensorName = removed.nome();
                 
-                actionLog.add(timestamp + " - Sensor removido: " + sensorName + " (ID: " + sensorId + ")");
+                actionLog.add(System.currentTimeMillis(), "sensor:" + sensorId, "remover", "api");
                 System.out.println("🗑️ Sensor removido: " + sensorName);
                 
                 // Salvar mudanças
                 saveDataToFile();
                 
-                return "{\"success\": true, \"message\": \"Sensor " + sensorName + " removido com sucesso\", \"sensorCount\": " + sensorCount + "}";
+                int count = sensors.size();
+                return w -> w.beginObject()
+                        .field("success", true)
+                        .field("message", "Sensor " + sensorName + " removido com sucesso")
+                        .field("sensorCount", count)
+                        .endObject();
             } else {
-                return "{\"success\": false, \"error\": \"Sensor com ID " + sensorId + " não encontrado\"}";
+                return result(false, "Sensor com ID " + sensorId + " não encontrado");
             }
             
         } catch (Exception e) {
-            return "{\"success\": false, \"error\": \"Erro ao remover sensor: " + e.getMessage() + "\"}";
+            return result(false, "Erro ao remover sensor: " + e.getMessage());
         }
     }
     
     // ANTI-PATTERN: Violação DRY - código repetitivo
     public void setupDefaultSensors() {
         // Sensor temperatura 1
-        sensorsData.add("TEMP001|Sensor Temperatura 1|temperatura|22.5|true");
-        sensorCount++;
+        sensors.addLine("TEMP001|Sensor Temperatura 1|temperatura|22.5|true");
         
         // Sensor temperatura 2 (DUPLICAÇÃO DESNECESSÁRIA)
-        sensorsData.add("TEMP002|Sensor Temperatura 2|temperatura|22.0|true");
-        sensorCount++;
+        sensors.addLine("TEMP002|Sensor Temperatura 2|temperatura|22.0|true");
         
         // Sensor presença 1
-        sensorsData.add("PRES001|Sensor Presença 1|presenca|false|true");
-        sensorCount++;
+        sensors.addLine("PRES001|Sensor Presença 1|presenca|false|true");
         
         // Sensor presença 2 (MAIS DUPLICAÇÃO)
-        sensorsData.add("PRES002|Sensor Presença 2|presenca|false|true");
-        sensorCount++;
+        sensors.addLine("PRES002|Sensor Presença 2|presenca|false|true");
         
         // Sensor luminosidade
-        sensorsData.add("LUX001|Sensor Luminosidade|luminosidade|450|true");
-        sensorCount++;
+        sensors.addLine("LUX001|Sensor Luminosidade|luminosidade|450|true");
         
-        System.out.println("📊 " + sensorCount + " sensores configurados");
+        System.out.println("📊 " + sensors.size() + " sensores configurados");
     }
     
     // ANTI-PATTERN: Método fazendo múltiplas coisas
@@ -136,17 +181,36 @@ public class SmartRoomSystem implements HttpHandler {
         timer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
-                collectSensorData();
-                processAutomaticActions();
+                long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+                long t = start;
+                // leituras, reação dos atuadores e contador saem juntos numa única publicação
+                RoomState ciclo;
+                synchronized (STATE_LOCK) {
+                    ciclo = collectSensorData(state);
+                    if (Metrics.ENABLED) t = Metrics.lap(STAGE_COLLECT, t);
+                    ciclo = processAutomaticActions(ciclo).proximoCiclo();
+                    state = ciclo;
+                }
+                if (Metrics.ENABLED) t = Metrics.lap(STAGE_ACTIONS, t);
+                updateStats(ciclo);
+                if (Metrics.ENABLED) t = Metrics.lap(STAGE_STATS, t);
                 saveDataToFile();
+                saveCheckpoint();
+                if (Metrics.ENABLED) t = Metrics.lap(STAGE_SAVE, t);
                 generateReport();
-                processCount++;
+                if (Metrics.ENABLED) t = Metrics.lap(STAGE_REPORT, t);
+                publishChanges();
+                if (Metrics.ENABLED) {
+                    Metrics.lap(STAGE_PUBLISH, t);
+                    Metrics.lap(STAGE_TOTAL, start);
+                }
             }
         }, 0, 5000); // A cada 5 segundos
     }
     
     // ANTI-PATTERN: Lógica hardcoded e spaghetti
-    public void collectSensorData() {
+    // Devolve o estado com as novas leituras; quem chama decide quando publicar
+    public RoomState collectSensorData(RoomState atual) {
         Random random = new Random();
         SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
         String timestamp = sdf.format(new Date());
@@ -154,11 +218,9 @@ public class SmartRoomSystem implements HttpHandler {
         // Simular temperatura
         double temp = 18 + (random.nextDouble() * 15);
         temp = Math.round(temp * 10.0) / 10.0;
-        currentValues.put("temperatura", temp);
         
         // Simular presença
         boolean presenca = random.nextInt(100) < 30;
-        currentValues.put("presenca", presenca);
         
         // Simular luminosidade baseada na presença (LÓGICA MISTURADA)
         int lux;
@@ -167,61 +229,94 @@ public class SmartRoomSystem implements HttpHandler {
         } else {
             lux = 50 + random.nextInt(200);
         }
-        currentValues.put("luminosidade", lux);
         
         System.out.println(timestamp + " - Temp: " + temp + "°C, Presença: " + presenca + ", Lux: " + lux);
+        return atual.comLeituras(temp, presenca, lux, System.currentTimeMillis());
     }
     
-    // ANTI-PATTERN: Condicionais aninhadas profundamente
-    public void processAutomaticActions() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        String timestamp = sdf.format(new Date());
-        
-        // Lógica da luz (SPAGHETTI CODE)
-        boolean presenca = (Boolean) currentValues.get("presenca");
-        int luminosidade = (Integer) currentValues.get("luminosidade");
-        
-        if (presenca == true) {
-            if (luminosidade < 300) {
-                if (lightStatus == false) {
-                    lightStatus = true;
-                    actionLog.add(timestamp + " - Luz LIGADA");
-                    System.out.println("💡 LUZ LIGADA!");
-                }
-            } else {
-                if (lightStatus == true) {
-                    lightStatus = false;
-                    actionLog.add(timestamp + " - Luz DESLIGADA");
-                    System.out.println("💡 LUZ DESLIGADA!");
-                }
-            }
+    // Luz e ventilador com histerese: leituras ruidosas perto do limite não fazem o dispositivo
+    // ficar ligando e desligando. A luz acende abaixo de LUX_ACENDER e só apaga (com presença)
+    // a partir de LUX_ACENDER + LUX_HISTERESE; o ventilador já tem a faixa MIN_TEMP + 2 .. MAX_TEMP.
+    // Depois de uma troca, o dispositivo fica no estado por ACTUATOR_HOLD_MS; o que a regra pedir
+    // nesse intervalo e desfizer antes do fim não vira comando.
+    // "suppressed" conta um comando que a regra antiga teria enviado neste ciclo (a sombra
+    // lightShadow/fanShadow trocou) e a atual não: uma leitura na faixa ou um hold conta uma vez só.
+    // Devolve o estado com os atuadores atualizados (chamado com STATE_LOCK).
+    public RoomState processAutomaticActions(RoomState atual) {
+        long now = System.currentTimeMillis();
+        boolean lightStatus = atual.lightStatus();
+        boolean fanStatus = atual.fanStatus();
+        
+        boolean presenca = atual.presenca();
+        int luminosidade = atual.luminosidade();
+        boolean querLuz;
+        if (!presenca) {
+            querLuz = false;
+        } else if (luminosidade < LUX_ACENDER) {
+            querLuz = true;
+        } else if (luminosidade >= LUX_ACENDER + LUX_HISTERESE) {
+            querLuz = false;
         } else {
-            if (lightStatus == true) {
-                lightStatus = false;
-                actionLog.add(timestamp + " - Luz DESLIGADA (sem presença)");
-                System.out.println("💡 LUZ DESLIGADA!");
-            }
+            querLuz = lightStatus; // dentro da faixa de histerese
+        }
+        boolean luzAntiga = presenca && luminosidade < LUX_ACENDER; // regra sem histerese
+        boolean luzAntigaTrocou = luzAntiga != lightShadow;
+        lightShadow = luzAntiga;
+        if (querLuz != lightStatus && now - lightChangedAt >= ACTUATOR_HOLD_MS) {
+            lightStatus = querLuz;
+            lightChangedAt = now;
+            actionLog.add(now, "luz", querLuz ? "ligar" : "desligar", presenca ? "automatico" : "sem presenca");
+            System.out.println(querLuz ? "💡 LUZ LIGADA!" : "💡 LUZ DESLIGADA!");
+            countCommand("luz", "sent");
+        } else if (luzAntigaTrocou) {
+            countCommand("luz", "suppressed");
         }
         
-        // Lógica do ventilador (CÓDIGO DUPLICADO)
-        double temperatura = (Double) currentValues.get("temperatura");
-        if (temperatura > MAX_TEMP) {
-            if (fanStatus == false) {
-                fanStatus = true;
-                actionLog.add(timestamp + " - Ventilador LIGADO");
-                System.out.println("🌀 VENTILADOR LIGADO!");
-            }
-        } else if (temperatura < MIN_TEMP + 2) {
-            if (fanStatus == true) {
-                fanStatus = false;
-                actionLog.add(timestamp + " - Ventilador DESLIGADO");
-                System.out.println("🌀 VENTILADOR DESLIGADO!");
+        double temperatura = atual.temperatura();
+        boolean querVentilador = temperatura > MAX_TEMP || (fanStatus && temperatura >= MIN_TEMP + 2);
+        boolean ventiladorAntigo = temperatura > MAX_TEMP || (fanShadow && temperatura >= MIN_TEMP + 2); // sem tempo mínimo
+        boolean ventiladorAntigoTrocou = ventiladorAntigo != fanShadow;
+        fanShadow = ventiladorAntigo;
+        if (querVentilador != fanStatus && now - fanChangedAt >= ACTUATOR_HOLD_MS) {
+            fanStatus = querVentilador;
+            fanChangedAt = now;
+            actionLog.add(now, "ventilador", querVentilador ? "ligar" : "desligar", "automatico");
+            System.out.println(querVentilador ? "🌀 VENTILADOR LIGADO!" : "🌀 VENTILADOR DESLIGADO!");
+            countCommand("ventilador", "sent");
+        } else if (ventiladorAntigoTrocou) {
+            countCommand("ventilador", "suppressed");
+        }
+        return atual.comLuz(lightStatus).comVentilador(fanStatus);
+    }
+    
+    private static void countCommand(String device, String result) {
+        if (Metrics.ENABLED) {
+            Metrics.counter("smartroom_actuator_commands_total",
+                    "Trocas automáticas de estado dos atuadores: enviadas ou evitadas pela histerese/tempo mínimo.",
+                    Metrics.labels("device", device, "result", result)).increment();
+        }
+    }
+    
+    // Atualiza os agregados com a leitura do ciclo atual
+    public void updateStats(RoomState ciclo) {
+        long now = System.currentTimeMillis();
+        temperaturaStats.add(ciclo.temperatura());
+        presencaStats.add(ciclo.presenca() ? 1 : 0);
+        luminosidadeStats.add(ciclo.luminosidade());
+        luzDuty.update(now, ciclo.lightStatus());
+        ventiladorDuty.update(now, ciclo.fanStatus());
+        if (history != null) {
+            try {
+                history.append(now, new double[]{ciclo.temperatura(), ciclo.presenca() ? 1 : 0, ciclo.luminosidade()});
+            } catch (IOException e) {
+                lastError = "Erro ao gravar histórico: " + e.getMessage();
             }
         }
     }
     
     // ANTI-PATTERN: Método gigante para salvar dados
-    public void saveDataToFile() {
+    public synchronized void saveDataToFile() {
+        RoomState atual = state;
         try {
             FileWriter writer = new FileWriter(DATA_FILE, false);
             SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
@@ -229,24 +324,18 @@ public class SmartRoomSystem implements HttpHandler {
             
             writer.write("=== DADOS DOS SENSORES ===\n");
             writer.write("Timestamp: " + timestamp + "\n");
-            writer.write("Sensores: " + sensorCount + "\n\n");
+            writer.write("Sensores: " + sensors.size() + "\n\n");
             
-            // ANTI-PATTERN: Loop com lógica complexa desnecessária
-            for (int i = 0; i < sensorsData.size(); i++) {
-                String sensor = sensorsData.get(i);
-                if (sensor != null) {
-                    if (!sensor.isEmpty()) {
-                        writer.write(sensor + "\n");
-                    }
-                }
+            for (SensorRegistry.Sensor sensor : sensors.all()) {
+                writer.write(sensor.toLine() + "\n");
             }
             
             writer.write("\n=== VALORES ATUAIS ===\n");
-            writer.write("Temperatura: " + currentValues.get("temperatura") + "°C\n");
-            writer.write("Presença: " + currentValues.get("presenca") + "\n");
-            writer.write("Luminosidade: " + currentValues.get("luminosidade") + " lux\n");
-            writer.write("Luz: " + (lightStatus ? "LIGADA" : "DESLIGADA") + "\n");
-            writer.write("Ventilador: " + (fanStatus ? "LIGADO" : "DESLIGADO") + "\n");
+            writer.write("Temperatura: " + atual.temperatura() + "°C\n");
+            writer.write("Presença: " + atual.presenca() + "\n");
+            writer.write("Luminosidade: " + atual.luminosidade() + " lux\n");
+            writer.write("Luz: " + (atual.lightStatus() ? "LIGADA" : "DESLIGADA") + "\n");
+            writer.write("Ventilador: " + (atual.fanStatus() ? "LIGADO" : "DESLIGADO") + "\n");
             
             writer.close();
         } catch (IOException e) {
@@ -256,7 +345,8 @@ public class SmartRoomSystem implements HttpHandler {
     }
     
     // ANTI-PATTERN: Geração de relatório hardcoded
-    public void generateReport() {
+    public synchronized void generateReport() {
+        RoomState atual = state;
         try {
             FileWriter writer = new FileWriter(REPORT_FILE, false);
             SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
@@ -266,23 +356,30 @@ public class SmartRoomSystem implements HttpHandler {
             writer.write("Gerado em: " + timestamp + "\n\n");
             
             writer.write("SENSORES:\n");
-            writer.write("- Total: " + sensorCount + "\n");
-            writer.write("- Temperatura: " + currentValues.get("temperatura") + "°C\n");
-            writer.write("- Presença: " + (((Boolean)currentValues.get("presenca")) ? "SIM" : "NÃO") + "\n");
-            writer.write("- Luminosidade: " + currentValues.get("luminosidade") + " lux\n\n");
+            writer.write("- Total: " + sensors.size() + "\n");
+            writer.write("- Temperatura: " + atual.temperatura() + "°C\n");
+            writer.write("- Presença: " + (atual.presenca() ? "SIM" : "NÃO") + "\n");
+            writer.write("- Luminosidade: " + atual.luminosidade() + " lux\n\n");
             
             writer.write("DISPOSITIVOS:\n");
-            writer.write("- Luz: " + (lightStatus ? "LIGADA" : "DESLIGADA") + "\n");
-            writer.write("- Ventilador: " + (fanStatus ? "LIGADO" : "DESLIGADO") + "\n\n");
+            writer.write("- Luz: " + (atual.lightStatus() ? "LIGADA" : "DESLIGADA") + "\n");
+            writer.write("- Ventilador: " + (atual.fanStatus() ? "LIGADO" : "DESLIGADO") + "\n\n");
             
             writer.write("ESTATÍSTICAS:\n");
-            writer.write("- Ciclos processados: " + processCount + "\n");
-            writer.write("- Ações no log: " + actionLog.size() + "\n\n");
+            writer.write("- Ciclos processados: " + atual.processCount() + "\n");
+            writer.write("- Ações no log: " + actionLog.lastSeq() + "\n\n");
+            
+            // Agregados já calculados: custo constante, independente do número de leituras
+            writer.write("AGREGADOS (" + temperaturaStats.count() + " leituras):\n");
+            writer.write(formatStats("Temperatura", temperaturaStats, "°C"));
+            writer.write(formatStats("Luminosidade", luminosidadeStats, " lux"));
+            writer.write(String.format(Locale.ROOT, "- Presença detectada: %.1f%% das leituras%n", presencaStats.mean() * 100));
+            writer.write(String.format(Locale.ROOT, "- Luz ligada: %.1f%% do tempo (%d comutações)%n", luzDuty.ratio() * 100, luzDuty.transitions()));
+            writer.write(String.format(Locale.ROOT, "- Ventilador ligado: %.1f%% do tempo (%d comutações)%n%n", ventiladorDuty.ratio() * 100, ventiladorDuty.transitions()));
             
             writer.write("ÚLTIMAS AÇÕES:\n");
-            int start = Math.max(0, actionLog.size() - 5);
-            for (int i = start; i < actionLog.size(); i++) {
-                writer.write("- " + actionLog.get(i) + "\n");
+            for (ActionLog.Action action : actionLog.latest(5)) {
+                writer.write("- " + sdf.format(new Date(action.epochMillis())) + " - " + action.text() + "\n");
             }
             
             writer.close();
@@ -292,24 +389,28 @@ public class SmartRoomSystem implements HttpHandler {
         }
     }
     
+    private String formatStats(String nome, RunningStats stats, String unidade) {
+        return String.format(Locale.ROOT, "- %s: min %.1f%s | máx %.1f%s | média %.1f%s | desvio %.2f | p50 %.1f | p95 %.1f | p99 %.1f%n",
+                nome, stats.min(), unidade, stats.max(), unidade, stats.mean(), unidade, stats.stddev(),
+                stats.quantile(0.5), stats.quantile(0.95), stats.quantile(0.99));
+    }
+    
     // ANTI-PATTERN: Carregamento com lógica misturada
     public void loadDataFromFile() {
         File file = new File(DATA_FILE);
         if (file.exists()) {
             try {
                 Scanner scanner = new Scanner(file);
-                sensorsData.clear();
-                sensorCount = 0;
+                sensors.clear();
                 
                 while (scanner.hasNextLine()) {
                     String line = scanner.nextLine();
                     if (line.contains("|") && !line.startsWith("===")) {
-                        sensorsData.add(line);
-                        sensorCount++;
+                        sensors.addLine(line);
                     }
                 }
                 scanner.close();
-                System.out.println("📥 " + sensorCount + " sensores carregados");
+                System.out.println("📥 " + sensors.size() + " sensores carregados");
             } catch (FileNotFoundException e) {
                 lastError = "Arquivo não encontrado";
                 System.err.println(lastError);
@@ -317,6 +418,47 @@ public class SmartRoomSystem implements HttpHandler {
         }
     }
     
+    // Restaura cadastro, log de ações e atuadores do checkpoint binário; false se não houver um válido
+    public boolean loadCheckpoint() {
+        try {
+            Checkpoint.Restored restored = Checkpoint.load(Path.of(CHECKPOINT_FILE), sensors, actionLog);
+            if (restored == null) return false;
+            synchronized (STATE_LOCK) {
+                state = state.comLuz(restored.lightStatus()).comVentilador(restored.fanStatus());
+                lightShadow = restored.lightStatus();
+                fanShadow = restored.fanStatus();
+            }
+            checkpointVersion = sensors.version();
+            checkpointSeq = actionLog.lastSeq();
+            checkpointLight = restored.lightStatus();
+            checkpointFan = restored.fanStatus();
+            System.out.println("📥 " + restored.sensors() + " sensores e " + restored.actions() + " ações carregados do checkpoint");
+            return true;
+        } catch (IOException e) {
+            System.out.println("❌ Erro ao ler checkpoint: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // Regrava o checkpoint se o cadastro, o log de ações ou os atuadores mudaram desde o último
+    public synchronized void saveCheckpoint() {
+        int version = sensors.version();
+        long seq = actionLog.lastSeq();
+        RoomState atual = state;
+        boolean light = atual.lightStatus(), fan = atual.fanStatus();
+        if (version == checkpointVersion && seq == checkpointSeq && light == checkpointLight && fan == checkpointFan) return;
+        try {
+            Checkpoint.write(Path.of(CHECKPOINT_FILE), sensors, actionLog, light, fan);
+            checkpointVersion = version;
+            checkpointSeq = seq;
+            checkpointLight = light;
+            checkpointFan = fan;
+        } catch (IOException e) {
+            lastError = "Erro ao gravar checkpoint: " + e.getMessage();
+            System.err.println(lastError);
+        }
+    }
+    
     // ANTI-PATTERN: Cadastro com validação hardcoded
     public String cadastrarSensor(String id, String nome, String tipo, String valorInicial) {
         // Validação hardcoded
@@ -333,22 +475,12 @@ public class SmartRoomSystem implements HttpHandler {
             return "ERRO: Tipo inválido";
         }
         
-        // Verificar duplicação (INEFICIENTE)
-        for (String sensor : sensorsData) {
-            String[] parts = sensor.split("\\|");
-            if (parts[0].equals(id)) {
-                return "ERRO: ID já existe";
-            }
+        // Adicionar sensor (checagem de ID duplicado atômica, O(1))
+        if (sensors.add(id, nome, tipo, valorInicial, true) == null) {
+            return "ERRO: ID já existe";
         }
         
-        // Adicionar sensor
-        String sensorData = id + "|" + nome + "|" + tipo + "|" + valorInicial + "|true";
-        sensorsData.add(sensorData);
-        sensorCount++;
-        
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        String timestamp = sdf.format(new Date());
-        actionLog.add(timestamp + " - Sensor cadastrado: " + nome);
+        actionLog.add(System.currentTimeMillis(), "sensor:" + id, "cadastrar", "api");
         
         return "SUCCESS: Sensor cadastrado!";
     }
@@ -361,194 +493,415 @@ public class SmartRoomSystem implements HttpHandler {
         
         System.out.println("🌐 " + method + " " + path);
         
-        String response = "";
+        JsonWriter.Body response;
         int statusCode = 200;
         
         // ANTI-PATTERN: Giant if-else chain
         if (path.equals("/api/sensors") && method.equals("GET")) {
-            response = getSensorsJson();
+            String tipo = queryParam(exchange.getRequestURI().getQuery(), "tipo");
+            if (tipo == null) {
+                response = w -> writeSensorsJson(w, sensors.all(), sensors.size());
+            } else {
+                // filtro pelo índice secundário, sem varrer os outros tipos
+                Collection<SensorRegistry.Sensor> list = sensors.byTipo(tipo);
+                response = w -> writeSensorsJson(w, list, list.size());
+            }
         } else if (path.equals("/api/sensors") && method.equals("POST")) {
-            String body = new String(exchange.getRequestBody().readAllBytes());
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
             response = handleAddSensor(body);
         } else if (path.startsWith("/api/sensor/") && method.equals("DELETE")) {
             String sensorId = path.substring("/api/sensor/".length());
             response = handleDeleteSensor(sensorId);
         } else if (path.equals("/api/data") && method.equals("GET")) {
-            response = getCurrentDataJson();
+            response = this::writeCurrentDataJson;
         } else if (path.equals("/api/actions") && method.equals("GET")) {
-            response = getActionsJson();
+            // ?after=<seq>&limit=<n>: página pelo cursor; sem after, as últimas n ações
+            String query = exchange.getRequestURI().getQuery();
+            try {
+                String limitParam = queryParam(query, "limit");
+                String afterParam = queryParam(query, "after");
+                long requested = limitParam == null ? 10 : parseLongParam("limit", limitParam);
+                // valida antes do cast: um long negativo grande viraria um int positivo
+                if (requested < 0) throw new IllegalArgumentException("Parâmetro limit inválido: " + limitParam);
+                int limit = (int) Math.min(requested, actionLog.capacity());
+                long after = afterParam == null ? Math.max(0, actionLog.lastSeq() - limit) : parseLongParam("after", afterParam);
+                List<ActionLog.Action> page = actionLog.page(after, limit);
+                response = w -> writeActionsJson(w, page, after);
+            } catch (IllegalArgumentException e) {
+                response = result(false, e.getMessage());
+                statusCode = 400;
+            }
         } else if (path.equals("/api/report") && method.equals("GET")) {
-            response = getReportJson();
+            response = this::writeReportJson;
+        } else if (path.equals("/api/history") && method.equals("GET")) {
+            String query = exchange.getRequestURI().getQuery();
+            try {
+                response = historyQuery(queryParam(query, "sensor"), queryParam(query, "from"),
+                        queryParam(query, "to"), queryParam(query, "step"));
+            } catch (IllegalArgumentException e) {
+                response = result(false, e.getMessage());
+                statusCode = 400;
+            }
         } else if (path.equals("/api/devices") && method.equals("POST")) {
-            String body = new String(exchange.getRequestBody().readAllBytes());
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
             response = handleDeviceControl(body);
         } else if (path.equals("/api/devices") && method.equals("GET")) {
-            response = getDevicesJson();
+            response = this::writeDevicesJson;
         } else {
-            response = "{\"error\": \"Endpoint não encontrado\"}";
+            response = w -> w.beginObject().field("error", "Endpoint não encontrado").endObject();
             statusCode = 404;
         }
         
+        // POST/DELETE podem ter mudado dispositivos, sensores ou o log
+        if (!method.equals("GET")) {
+            publishChanges();
+        }
+        
         // Headers CORS (hardcoded)
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
         exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, DELETE, OPTIONS");
         exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
         
-        exchange.sendResponseHeaders(statusCode, response.getBytes().length);
-        OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
-        os.close();
+        // Corpo em streaming (chunked): o JSON vai direto para o socket, sem String intermediária
+        exchange.sendResponseHeaders(statusCode, 0);
+        try (JsonWriter w = new JsonWriter(exchange.getResponseBody())) {
+            response.write(w);
+        }
     }
     
-    // ANTI-PATTERN: JSON hardcoded sem biblioteca
-    private String getSensorsJson() {
-        StringBuilder json = new StringBuilder();
-        json.append("{\"sensors\": [");
-        
-        for (int i = 0; i < sensorsData.size(); i++) {
-            String[] parts = sensorsData.get(i).split("\\|");
-            if (i > 0) json.append(",");
-            json.append("{")
-                .append("\"id\": \"").append(parts[0]).append("\",")
-                .append("\"nome\": \"").append(parts[1]).append("\",")
-                .append("\"tipo\": \"").append(parts[2]).append("\",")
-                .append("\"valor\": \"").append(parts[3]).append("\",")
-                .append("\"ativo\": ").append(parts[4])
-                .append("}");
+    /**
+     * GET /api/history?sensor=&from=&to=&step= (horários em epoch millis, step em ms).
+     * Padrões: to = agora, from = to - 1h, step = intervalo / 200. Devolve min/média/máx por bucket,
+     * no máximo HistoryStore.MAX_BUCKETS buckets (step é aumentado se preciso).
+     */
+    private JsonWriter.Body historyQuery(String sensor, String fromParam, String toParam, String stepParam) {
+        int index = HistoryStore.sensorIndex(sensor);
+        if (index < 0) {
+            throw new IllegalArgumentException("Parâmetro sensor deve ser temperatura, presenca ou luminosidade");
         }
-        
-        json.append("], \"total\": ").append(sensorCount).append("}");
-        return json.toString();
+        long to = toParam == null ? System.currentTimeMillis() : parseLongParam("to", toParam);
+        long from = fromParam == null ? to - 3_600_000L : parseLongParam("from", fromParam);
+        if (from > to) throw new IllegalArgumentException("Parâmetro from maior que to");
+        long step = stepParam == null ? Math.max(1, (to - from) / 200) : parseLongParam("step", stepParam);
+        if (step <= 0) throw new IllegalArgumentException("Parâmetro step deve ser positivo");
+        if (history == null) return result(false, "Histórico indisponível");
+        
+        long effective = HistoryStore.effectiveStep(from, to, step);
+        List<HistoryStore.Bucket> buckets;
+        try {
+            buckets = history.query(index, from, to, effective);
+        } catch (IOException e) {
+            return result(false, "Erro ao ler histórico: " + e.getMessage());
+        }
+        return w -> {
+            w.beginObject()
+                    .field("sensor", sensor)
+                    .field("from", from)
+                    .field("to", to)
+                    .field("step", effective)
+                    .name("buckets").beginArray();
+            for (HistoryStore.Bucket b : buckets) {
+                w.beginObject()
+                        .field("t", b.start())
+                        .field("min", b.min())
+                        .field("avg", b.avg())
+                        .field("max", b.max())
+                        .field("count", b.count())
+                        .endObject();
+            }
+            w.endArray().endObject();
+        };
+    }
+    
+    private static long parseLongParam(String name, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parâmetro " + name + " inválido: " + value);
+        }
+    }
+    
+    private static JsonWriter.Body result(boolean success, String text) {
+        return w -> w.beginObject().field("success", success).field(success ? "message" : "error", text).endObject();
     }
     
-    private String getCurrentDataJson() {
-        return "{" +
-                "\"temperatura\": " + currentValues.get("temperatura") + "," +
-                "\"presenca\": " + currentValues.get("presenca") + "," +
-                "\"luminosidade\": " + currentValues.get("luminosidade") + "," +
-                "\"lightStatus\": " + lightStatus + "," +
-                "\"fanStatus\": " + fanStatus + "," +
-                "\"timestamp\": \"" + new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()) + "\"" +
-                "}";
+    public EventStream getEventStream() {
+        return eventStream;
     }
     
-    private String getActionsJson() {
-        StringBuilder json = new StringBuilder();
-        json.append("{\"actions\": [");
+    /**
+     * Compara o estado atual com o último publicado e envia em /api/stream só as diferenças:
+     * leituras alteradas (data), transições de atuadores (devices), novas entradas do log
+     * (action) e contadores (report). Sensores cadastrados/removidos não passam por aqui: o
+     * SensorRegistry avisa cada um na hora (sensor-added/sensor-removed, ver publishSensorChange).
+     */
+    public synchronized void publishChanges() {
+        String timestamp = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date());
+        
+        RoomState atual = state;
+        RoomState anterior = published;
+        published = atual;
+        boolean primeira = anterior == null;
+        StringBuilder data = new StringBuilder();
+        if (primeira || atual.temperatura() != anterior.temperatura()) data.append("\"temperatura\": ").append(atual.temperatura()).append(",");
+        if (primeira || atual.presenca() != anterior.presenca()) data.append("\"presenca\": ").append(atual.presenca()).append(",");
+        if (primeira || atual.luminosidade() != anterior.luminosidade()) data.append("\"luminosidade\": ").append(atual.luminosidade()).append(",");
+        if (data.length() > 0) {
+            eventStream.publish("data", "{" + data + "\"timestamp\": \"" + timestamp + "\"}");
+        }
+        
+        // atuadores começam desligados: na primeira publicação, só avisa o que já está ligado
+        if (atual.lightStatus() != (!primeira && anterior.lightStatus())) {
+            eventStream.publish("devices", "{\"lightStatus\": " + atual.lightStatus() + "}");
+        }
+        if (atual.fanStatus() != (!primeira && anterior.fanStatus())) {
+            eventStream.publish("devices", "{\"fanStatus\": " + atual.fanStatus() + "}");
+        }
         
-        int start = Math.max(0, actionLog.size() - 10);
-        for (int i = start; i < actionLog.size(); i++) {
-            if (i > start) json.append(",");
-            json.append("\"").append(actionLog.get(i)).append("\"");
+        for (ActionLog.Action action : actionLog.page(publishedActions, actionLog.capacity())) {
+            eventStream.publish("action", JsonWriter.toString(w -> writeActionJson(w, action)));
+            publishedActions = action.seq();
         }
+        long actions = publishedActions;
         
-        json.append("]}");
-        return json.toString();
+        if (primeira || atual.processCount() != anterior.processCount() || actions != publishedActionsCount) {
+            publishedActionsCount = actions;
+            eventStream.publish("report", getStreamReportJson(atual));
+        }
+    }
+    
+    // Só o registro afetado; chamado dentro do lock do ID, então a ordem por sensor é a do cadastro
+    private void publishSensorChange(String event, SensorRegistry.Sensor sensor) {
+        if (eventStream.clientCount() > 0) {
+            eventStream.publish(event, JsonWriter.toString(w -> writeSensorJson(w, sensor)));
+        }
+    }
+    
+    // Snapshot enviado a quem conecta: o último estado PUBLICADO, para não duplicar eventos
+    private synchronized String streamSnapshot() {
+        RoomState p = published;
+        List<ActionLog.Action> actions = actionLog.page(publishedActions - 10, (int) Math.min(10, publishedActions));
+        return EventStream.frame("data", "{" +
+                        "\"temperatura\": " + p.temperatura() + "," +
+                        "\"presenca\": " + p.presenca() + "," +
+                        "\"luminosidade\": " + p.luminosidade() + "," +
+                        "\"timestamp\": \"" + new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()) + "\"}")
+                + EventStream.frame("devices", "{\"lightStatus\": " + p.lightStatus() + ", \"fanStatus\": " + p.fanStatus() + "}")
+                + EventStream.frame("actions", JsonWriter.toString(w -> writeActionsJson(w, actions, publishedActions)))
+                + EventStream.frame("sensors", getSensorsJson())
+                + EventStream.frame("report", getStreamReportJson(p));
+    }
+    
+    private String getStreamReportJson(RoomState atual) {
+        return JsonWriter.toString(w -> w.beginObject()
+                .field("totalSensors", sensors.size())
+                .field("processCount", atual.processCount())
+                .field("actionsCount", actionLog.lastSeq())
+                .endObject());
+    }
+    
+    private String getSensorsJson() {
+        return JsonWriter.toString(w -> writeSensorsJson(w, sensors.all(), sensors.size()));
+    }
+    
+    // Registros já tipados: nenhuma linha é re-parseada na listagem
+    private void writeSensorsJson(JsonWriter w, Collection<SensorRegistry.Sensor> list, int total) throws IOException {
+        w.beginObject().name("sensors").beginArray();
+        for (SensorRegistry.Sensor sensor : list) {
+            writeSensorJson(w, sensor);
+        }
+        w.endArray().field("total", total).endObject();
+    }
+    
+    private void writeSensorJson(JsonWriter w, SensorRegistry.Sensor sensor) throws IOException {
+        w.beginObject()
+            .field("id", sensor.id())
+            .field("nome", sensor.nome())
+            .field("tipo", sensor.tipo())
+            .field("valor", sensor.valor())
+            .field("ativo", sensor.ativo())
+            .endObject();
+    }
+    
+    // Um único RoomState por resposta: leituras e atuadores sempre do mesmo ciclo
+    private void writeCurrentDataJson(JsonWriter w) throws IOException {
+        RoomState atual = state;
+        w.beginObject()
+            .field("temperatura", atual.temperatura())
+            .field("presenca", atual.presenca())
+            .field("luminosidade", atual.luminosidade())
+            .field("lightStatus", atual.lightStatus())
+            .field("fanStatus", atual.fanStatus())
+            .field("timestamp", new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()))
+            .endObject();
+    }
+    
+    // Página do log: {"actions": [...], "next": cursor para o próximo after, "oldest", "total"}
+    private void writeActionsJson(JsonWriter w, List<ActionLog.Action> actions, long after) throws IOException {
+        w.beginObject().name("actions").beginArray();
+        for (ActionLog.Action action : actions) {
+            writeActionJson(w, action);
+        }
+        w.endArray()
+            .field("next", actions.isEmpty() ? after : actions.get(actions.size() - 1).seq())
+            .field("oldest", actionLog.oldestSeq())
+            .field("total", actionLog.lastSeq())
+            .endObject();
     }
     
-    private String getReportJson() {
+    private void writeActionJson(JsonWriter w, ActionLog.Action action) throws IOException {
+        w.beginObject()
+            .field("seq", action.seq())
+            .field("timestamp", action.epochMillis())
+            .field("device", action.device())
+            .field("action", action.action())
+            .field("cause", action.cause())
+            .field("text", action.text())
+            .endObject();
+    }
+    
+    private void writeReportJson(JsonWriter w) throws IOException {
         SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
         String timestamp = sdf.format(new Date());
-        
-        return "{" +
-                "\"timestamp\": \"" + timestamp + "\"," +
-                "\"totalSensors\": " + sensorCount + "," +
-                "\"processCount\": " + processCount + "," +
-                "\"temperatura\": " + currentValues.get("temperatura") + "," +
-                "\"presenca\": " + currentValues.get("presenca") + "," +
-                "\"luminosidade\": " + currentValues.get("luminosidade") + "," +
-                "\"lightStatus\": " + lightStatus + "," +
-                "\"fanStatus\": " + fanStatus + "," +
-                "\"actionsCount\": " + actionLog.size() +
-                "}";
+        RoomState atual = state;
+        
+        w.beginObject()
+            .field("timestamp", timestamp)
+            .field("totalSensors", sensors.size())
+            .field("processCount", atual.processCount())
+            .field("temperatura", atual.temperatura())
+            .field("presenca", atual.presenca())
+            .field("luminosidade", atual.luminosidade())
+            .field("lightStatus", atual.lightStatus())
+            .field("fanStatus", atual.fanStatus())
+            .field("actionsCount", actionLog.lastSeq())
+            .name("estatisticas").beginObject();
+        writeStatsJson(w, "temperatura", temperaturaStats);
+        writeStatsJson(w, "luminosidade", luminosidadeStats);
+        writeStatsJson(w, "presenca", presencaStats);
+        w.name("luz").beginObject().field("ligadoPct", luzDuty.ratio() * 100).field("comutacoes", luzDuty.transitions()).endObject()
+            .name("ventilador").beginObject().field("ligadoPct", ventiladorDuty.ratio() * 100).field("comutacoes", ventiladorDuty.transitions()).endObject()
+            .endObject()
+            .endObject();
+    }
+    
+    private void writeStatsJson(JsonWriter w, String nome, RunningStats stats) throws IOException {
+        w.name(nome).beginObject()
+            .field("leituras", stats.count())
+            .field("min", stats.min())
+            .field("max", stats.max())
+            .field("media", stats.mean())
+            .field("desvio", stats.stddev())
+            .field("p50", stats.quantile(0.5))
+            .field("p95", stats.quantile(0.95))
+            .field("p99", stats.quantile(0.99))
+            .endObject();
     }
     
-    private String getDevicesJson() {
-        return "{" +
-                "\"luz\": " + lightStatus + "," +
-                "\"ventilador\": " + fanStatus + "," +
-                "\"timestamp\": \"" + new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()) + "\"" +
-                "}";
+    private void writeDevicesJson(JsonWriter w) throws IOException {
+        RoomState atual = state;
+        w.beginObject()
+            .field("luz", atual.lightStatus())
+            .field("ventilador", atual.fanStatus())
+            .field("timestamp", new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date()))
+            .endObject();
     }
     
     // ANTI-PATTERN: Método gigante para controle de dispositivos
-    private String handleDeviceControl(String body) {
+    private JsonWriter.Body handleDeviceControl(String body) {
         try {
             String device = extractJsonValue(body, "device");
             String action = extractJsonValue(body, "action");
             
-            SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-            String timestamp = sdf.format(new Date());
+            long now = System.currentTimeMillis();
             
             boolean success = false;
             String message = "";
             
-            // ANTI-PATTERN: Giant if-else para controle
-            if ("luz".equals(device)) {
-                if ("ligar".equals(action)) {
-                    if (!lightStatus) {
-                        lightStatus = true;
-                        actionLog.add(timestamp + " - Luz LIGADA manualmente via API");
-                        message = "Luz ligada com sucesso";
-                        success = true;
-                        System.out.println("💡 LUZ LIGADA VIA API!");
-                    } else {
-                        message = "Luz já estava ligada";
-                        success = true;
-                    }
-                } else if ("desligar".equals(action)) {
-                    if (lightStatus) {
-                        lightStatus = false;
-                        actionLog.add(timestamp + " - Luz DESLIGADA manualmente via API");
-                        message = "Luz desligada com sucesso";
-                        success = true;
-                        System.out.println("💡 LUZ DESLIGADA VIA API!");
-                    } else {
-                        message = "Luz já estava desligada";
-                        success = true;
-                    }
-                } else {
-                    message = "Ação inválida para luz. Use: ligar ou desligar";
-                }
-            } else if ("ventilador".equals(device)) {
-                if ("ligar".equals(action)) {
-                    if (!fanStatus) {
-                        fanStatus = true;
-                        actionLog.add(timestamp + " - Ventilador LIGADO manualmente via API");
-                        message = "Ventilador ligado com sucesso";
-                        success = true;
-                        System.out.println("🌀 VENTILADOR LIGADO VIA API!");
+            // o ciclo do Timer não pode publicar no meio do comando (e desfazê-lo)
+            synchronized (STATE_LOCK) {
+                boolean lightStatus = state.lightStatus();
+                boolean fanStatus = state.fanStatus();
+                
+                // ANTI-PATTERN: Giant if-else para controle
+                if ("luz".equals(device)) {
+                    if ("ligar".equals(action)) {
+                        if (!lightStatus) {
+                            lightStatus = true;
+                            lightChangedAt = now;
+                            lightShadow = true;
+                            actionLog.add(now, "luz", "ligar", "api");
+                            message = "Luz ligada com sucesso";
+                            success = true;
+                            System.out.println("💡 LUZ LIGADA VIA API!");
+                        } else {
+                            message = "Luz já estava ligada";
+                            success = true;
+                        }
+                    } else if ("desligar".equals(action)) {
+                        if (lightStatus) {
+                            lightStatus = false;
+                            lightChangedAt = now;
+                            lightShadow = false;
+                            actionLog.add(now, "luz", "desligar", "api");
+                            message = "Luz desligada com sucesso";
+                            success = true;
+                            System.out.println("💡 LUZ DESLIGADA VIA API!");
+                        } else {
+                            message = "Luz já estava desligada";
+                            success = true;
+                        }
                     } else {
-                        message = "Ventilador já estava ligado";
-                        success = true;
+                        message = "Ação inválida para luz. Use: ligar ou desligar";
                     }
-                } else if ("desligar".equals(action)) {
-                    if (fanStatus) {
-                        fanStatus = false;
-                        actionLog.add(timestamp + " - Ventilador DESLIGADO manualmente via API");
-                        message = "Ventilador desligado com sucesso";
-                        success = true;
-                        System.out.println("🌀 VENTILADOR DESLIGADO VIA API!");
+                } else if ("ventilador".equals(device)) {
+                    if ("ligar".equals(action)) {
+                        if (!fanStatus) {
+                            fanStatus = true;
+                            fanChangedAt = now;
+                            fanShadow = true;
+                            actionLog.add(now, "ventilador", "ligar", "api");
+                            message = "Ventilador ligado com sucesso";
+                            success = true;
+                            System.out.println("🌀 VENTILADOR LIGADO VIA API!");
+                        } else {
+                            message = "Ventilador já estava ligado";
+                            success = true;
+                        }
+                    } else if ("desligar".equals(action)) {
+                        if (fanStatus) {
+                            fanStatus = false;
+                            fanChangedAt = now;
+                            fanShadow = false;
+                            actionLog.add(now, "ventilador", "desligar", "api");
+                            message = "Ventilador desligado com sucesso";
+                            success = true;
+                            System.out.println("🌀 VENTILADOR DESLIGADO VIA API!");
+                        } else {
+                            message = "Ventilador já estava desligado";
+                            success = true;
+                        }
                     } else {
-                        message = "Ventilador já estava desligado";
-                        success = true;
+                        message = "Ação inválida para ventilador. Use: ligar ou desligar";
                     }
                 } else {
-                    message = "Ação inválida para ventilador. Use: ligar ou desligar";
+                    message = "Dispositivo inválido. Use: luz ou ventilador";
                 }
-            } else {
-                message = "Dispositivo inválido. Use: luz ou ventilador";
+                
+                state = state.comLuz(lightStatus).comVentilador(fanStatus);
             }
             
-            return "{\"success\": " + success + ", \"message\": \"" + message + "\"}";
+            boolean ok = success;
+            String text = message;
+            return w -> w.beginObject().field("success", ok).field("message", text).endObject();
             
         } catch (Exception e) {
-            return "{\"success\": false, \"error\": \"Erro ao controlar dispositivo: " + e.getMessage() + "\"}";
+            return result(false, "Erro ao controlar dispositivo: " + e.getMessage());
         }
     }
     
-    private String handleAddSensor(String body) {
+    private JsonWriter.Body handleAddSensor(String body) {
         try {
             // Parse manual JSON (PRIMITIVO)
             String id = extractJsonValue(body, "id");
@@ -561,15 +914,23 @@ public class SmartRoomSystem implements HttpHandler {
             if (result.startsWith("SUCCESS")) {
                 // Salvar mudanças automaticamente
                 saveDataToFile();
-                return "{\"success\": true, \"message\": \"" + result + "\"}";
+                return result(true, result);
             } else {
-                return "{\"success\": false, \"error\": \"" + result + "\"}";
+                return result(false, result);
             }
         } catch (Exception e) {
-            return "{\"success\": false, \"error\": \"Erro: " + e.getMessage() + "\"}";
+            return result(false, "Erro: " + e.getMessage());
         }
     }
     
+    private String queryParam(String query, String name) {
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) return pair.substring(name.length() + 1);
+        }
+        return null;
+    }
+    
     // ANTI-PATTERN: Parser JSON primitivo e ineficiente
     private String extractJsonValue(String json, String key) {
         String searchKey = "\"" + key + "\"";
@@ -596,8 +957,22 @@ public class SmartRoomSystem implements HttpHandler {
         if (timer != null) {
             timer.cancel();
         }
+        eventStream.close();
         saveDataToFile();
+        saveCheckpoint();
         generateReport();
+        try {
+            actionLog.close();
+        } catch (IOException e) {
+            System.out.println("❌ Erro ao fechar log de ações: " + e.getMessage());
+        }
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.out.println("❌ Erro ao fechar histórico: " + e.getMessage());
+            }
+        }
         System.out.println("✅ Sistema parado!");
     }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Arquivos estáticos do webapp carregados UMA vez em memória.
+ *
+ * Cada arquivo é lido, tem o ETag calculado (SHA-256 do conteúdo) e, se for texto,
+ * é comprimido em gzip na carga; as requisições não tocam mais no disco.
+ * Com {@link #startWatching()} um WatchService recarrega os arquivos alterados.
+ */
+public class StaticAssetCache {
+
+    /** Conteúdo de um arquivo; gzip é null quando a compressão não compensa. */
+    public record Asset(String contentType, byte[] identity, byte[] gzip, String etag) {
+
+        /** ETag de cada codificação (representações diferentes, ETags diferentes). */
+        public String etag(boolean gzipped) {
+            return gzipped ? "\"" + etag + "-gz\"" : "\"" + etag + "\"";
+        }
+
+        /** If-None-Match casa com qualquer codificação deste conteúdo. */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) return false;
+            for (String tag : ifNoneMatch.split(",")) {
+                String t = tag.trim();
+                if (t.equals("*")) return true;
+                if (t.startsWith("W/")) t = t.substring(2);
+                if (t.equals(etag(false)) || t.equals(etag(true))) return true;
+            }
+            return false;
+        }
+    }
+
+    private final Path root;
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private WatchService watcher;
+
+    public StaticAssetCache(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        try (Stream<Path> files = Files.walk(this.root)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                load(file);
+            }
+        }
+    }
+
+    /** Caminho da URL ("/js/app.js") -> arquivo em memória, ou null. */
+    public Asset get(String requestPath) {
+        return assets.get(requestPath);
+    }
+
+    public int size() {
+        return assets.size();
+    }
+
+    private void load(Path file) {
+        String key = "/" + root.relativize(file).toString().replace('\\', '/');
+        try {
+            byte[] content = Files.readAllBytes(file);
+            String contentType = getContentType(key);
+            byte[] gzip = compressible(contentType) ? gzip(content) : null;
+            if (gzip != null && gzip.length >= content.length) gzip = null;
+            assets.put(key, new Asset(contentType, content, gzip, sha256(content)));
+        } catch (IOException e) {
+            // arquivo removido ou sendo escrito: mantém a versão anterior até o próximo evento
+            System.err.println("Erro ao carregar " + key + ": " + e.getMessage());
+        }
+    }
+
+    /** Inicia uma thread que recarrega arquivos criados/alterados e remove os apagados. */
+    public synchronized void startWatching() throws IOException {
+        if (watcher != null) return;
+        watcher = FileSystems.getDefault().newWatchService();
+        try (Stream<Path> dirs = Files.walk(root)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) register(dir);
+        }
+        Thread t = new Thread(this::watchLoop, "static-asset-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void register(Path dir) throws IOException {
+        dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path dir = (Path) key.watchable();
+                for (var event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                    Path file = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        assets.remove("/" + root.relativize(file).toString().replace('\\', '/'));
+                    } else if (Files.isDirectory(file)) {
+                        register(file);
+                    } else if (Files.isRegularFile(file)) {
+                        load(file);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // encerrado
+        } catch (IOException e) {
+            System.err.println("Monitoramento de arquivos estáticos parado: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (watcher != null) watcher.close();
+    }
+
+    static String getContentType(String filePath) {
+        if (filePath.endsWith(".html")) return "text/html; charset=utf-8";
+        if (filePath.endsWith(".css")) return "text/css; charset=utf-8";
+        if (filePath.endsWith(".js")) return "application/javascript; charset=utf-8";
+        if (filePath.endsWith(".json")) return "application/json";
+        if (filePath.endsWith(".png")) return "image/png";
+        if (filePath.endsWith(".jpg") || filePath.endsWith(".jpeg")) return "image/jpeg";
+        if (filePath.endsWith(".ico")) return "image/x-icon";
+        return "text/plain";
+    }
+
+    private static boolean compressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/");
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -7,16 +7,20 @@ const UPDATE_INTERVAL = 3000; // 3 segundos
 // Estado da aplicação
 let updateTimer = null;
 let isLoading = false;
+let eventSource = null;
+let recentActions = [];
 
 // Inicialização quando DOM estiver pronto
 document.addEventListener('DOMContentLoaded', function() {
     console.log('Smart Room Monitor iniciado');
     
-    // Carregar dados iniciais
-    loadInitialData();
-    
-    // Configurar atualizações automáticas
-    startAutoUpdate();
+    // Receber atualizações por push (SSE); polling só se o stream não estiver disponível
+    if (window.EventSource) {
+        startEventStream();
+    } else {
+        loadInitialData();
+        startAutoUpdate();
+    }
     
     // Configurar event listeners
     setupEventListeners();
@@ -72,31 +76,85 @@ async function updateActionLog() {
         const data = await response.json();
         
         if (response.ok && data.actions) {
-            const logContainer = document.getElementById('action-log');
-            
-            if (data.actions.length === 0) {
-                logContainer.innerHTML = '<p class="text-muted">Nenhuma ação registrada</p>';
-                return;
-            }
-            
-            // Criar HTML para as ações
-            const actionsHtml = data.actions
-                .slice(-10) // Últimas 10 ações
-                .reverse()  // Mais recentes primeiro
-                .map(action => `
-                    <div class="action-item">
-                        <i class='bx bx-check-circle text-success'></i>
-                        ${action}
-                    </div>
-                `).join('');
-            
-            logContainer.innerHTML = actionsHtml;
+            recentActions = data.actions.slice(-10);
+            renderActionLog();
         }
     } catch (error) {
         console.error('Erro ao atualizar log de ações:', error);
     }
 }
 
+// Renderizar as últimas ações (mais recentes primeiro)
+function renderActionLog() {
+    const logContainer = document.getElementById('action-log');
+    if (!logContainer) return;
+    
+    if (recentActions.length === 0) {
+        logContainer.innerHTML = '<p class="text-muted">Nenhuma ação registrada</p>';
+        return;
+    }
+    
+    logContainer.innerHTML = recentActions
+        .slice()
+        .reverse()
+        .map(action => `
+            <div class="action-item">
+                <i class='bx bx-check-circle text-success'></i>
+                ${formatAction(action)}
+            </div>
+        `).join('');
+}
+
+// Ação estruturada do log ({seq, timestamp, device, action, cause, text}) como texto
+function formatAction(action) {
+    return `${new Date(action.timestamp).toLocaleString('pt-BR')} - ${action.text}`;
+}
+
+// Conectar em /api/stream: o servidor envia o estado atual e depois só as mudanças
+function startEventStream() {
+    eventSource = new EventSource(`${API_BASE}/stream`);
+    
+    eventSource.onopen = () => {
+        stopAutoUpdate();
+        updateSystemStatus('Sistema ativo e monitorando');
+    };
+    
+    // Stream caiu: o navegador reconecta sozinho; enquanto isso, volta ao polling
+    eventSource.onerror = () => {
+        if (!updateTimer && !document.hidden) {
+            updateSystemStatus('Conexão em tempo real perdida, atualizando periodicamente', 'warning');
+            loadInitialData();
+            startAutoUpdate();
+        }
+    };
+    
+    eventSource.addEventListener('data', event => {
+        const data = JSON.parse(event.data);
+        if ('temperatura' in data) updateElement('temp-value', `${data.temperatura}°C`);
+        if ('presenca' in data) updateElement('presence-value', data.presenca ? 'Detectada' : 'Ausente');
+        if ('luminosidade' in data) updateElement('light-value', `${data.luminosidade} lux`);
+        updateElement('last-update', data.timestamp);
+        addUpdateAnimation();
+    });
+    
+    eventSource.addEventListener('devices', event => {
+        const data = JSON.parse(event.data);
+        if ('lightStatus' in data) updateDeviceStatus('light', data.lightStatus);
+        if ('fanStatus' in data) updateDeviceStatus('fan', data.fanStatus);
+    });
+    
+    eventSource.addEventListener('actions', event => {
+        recentActions = JSON.parse(event.data).actions;
+        renderActionLog();
+    });
+    
+    eventSource.addEventListener('action', event => {
+        recentActions.push(JSON.parse(event.data));
+        recentActions = recentActions.slice(-10);
+        renderActionLog();
+    });
+}
+
 // Controlar dispositivo
 async function toggleDevice(device) {
     if (isLoading) return;
@@ -128,8 +186,10 @@ async function toggleDevice(device) {
             // Atualizar interface imediatamente
             updateDeviceStatus(device === 'luz' ? 'light' : 'fan', !currentStatus);
             
-            // Atualizar log de ações
-            setTimeout(updateActionLog, 500);
+            // Atualizar log de ações (com o stream ativo ele chega por push)
+            if (!eventSource || eventSource.readyState !== EventSource.OPEN) {
+                setTimeout(updateActionLog, 500);
+            }
             
             // Mostrar feedback
             showNotification(result.message, 'success');
@@ -282,7 +342,7 @@ function setupEventListeners() {
     document.addEventListener('visibilitychange', () => {
         if (document.hidden) {
             stopAutoUpdate();
-        } else {
+        } else if (!eventSource || eventSource.readyState !== EventSource.OPEN) {
             startAutoUpdate();
             loadInitialData(); // Recarregar dados quando voltar à página
         }
@@ -291,7 +351,9 @@ function setupEventListeners() {
     // Detectar erros de rede
     window.addEventListener('online', () => {
         updateSystemStatus('Conexão restaurada', 'success');
-        loadInitialData();
+        if (!eventSource || eventSource.readyState !== EventSource.OPEN) {
+            loadInitialData();
+        }
     });
     
     window.addEventListener('offline', () => {